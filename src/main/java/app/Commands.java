@@ -5,6 +5,7 @@ import core.*;
 import hash.*;
 import index.*;
 import cluster.*;
+import cache.HashCache;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -18,8 +19,12 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.SortedMap;
 
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 
 public final class Commands {
@@ -43,57 +48,155 @@ public final class Commands {
     )
     public static class Hash implements Callable<Integer> {
 
+        /** Index column recording what was hashed with {@code --use-embedded-thumbnails}. */
+        static final String SOURCE = "source", SOURCE_THUMBNAIL = "thumbnail", SOURCE_IMAGE = "image";
+        /** Index column numbering groups of byte-identical files from 1; 0 for files without a copy. */
+        static final String EXACT = "exact";
+
         @Parameters(index = "0", paramLabel = "ROOT", description = "Root folder to scan")
         Path root;
 
-        @Option(names = "--algo", defaultValue = "phash", description = "Hasher: ahash|dhash|phash")
+        @Option(names = "--algo", defaultValue = "phash",
+                description = "Hasher(s): ahash|dhash|phash, 256-bit dhash16|phash16, a comma-separated list, or 'all' (64-bit only)")
         String algo;
 
         @Option(names = "--out", defaultValue = "hashes.csv", description = "Output index file (CSV)")
         Path out;
 
+        @Option(names = "--threads", description = "Hashing threads (default: number of CPUs)")
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        @Option(names = "--decode-threads", description = "Image decoding threads (default: number of CPUs)")
+        int decodeThreads = Runtime.getRuntime().availableProcessors();
+
+        @Option(names = "--cache", description = "Hash cache file (default: ROOT/" + HashCache.DEFAULT_NAME + ")")
+        Path cache;
+
+        @Option(names = "--no-cache", description = "Neither read nor update the hash cache")
+        boolean noCache;
+
+        @Option(names = "--decode-memory", paramLabel = "MB",
+                description = "Decoded pixels in flight across all decode threads (default: a quarter of the heap)")
+        long decodeMemoryMb = DecodeBudget.defaultBytes() >> 20;
+
+        @Option(names = "--max-decode-pixels",
+                description = "Subsample harder when an image would decode to more pixels than this (default: ${DEFAULT-VALUE})")
+        long maxDecodePixels = 50_000_000;
+
+        @Option(names = "--sniff",
+                description = "Pick files by their first bytes instead of their extension and report formats found")
+        boolean sniff;
+
+        @Option(names = "--dihedral",
+                description = "Also store each hash of all 8 rotations and mirrorings in a '<hasher>" + HashCsv.DIHEDRAL + "' column, for 'cluster --dihedral'")
+        boolean dihedral;
+
+        @Option(names = "--exact-duplicates",
+                description = "Group byte-identical files and hardlinks before decoding, hash one per group; adds an '" + EXACT + "' column")
+        boolean exactDuplicates;
+
+        @Option(names = "--use-embedded-thumbnails",
+                description = "Hash JPEGs from their EXIF thumbnail when its aspect ratio matches the image; adds a 'source' column")
+        boolean useThumbnails;
+
         @Override
         public Integer call() {
             try {
-                Hasher hasher = switch (algo.toLowerCase()) {
-                    case "ahash" -> new AHash();
-                    case "dhash" -> new DHash();
-                    case "phash" -> new PHashDct();
-                    default -> {
-                        System.err.println("Unknown --algo: " + algo);
-                        yield null;
+                if (threads < 1 || decodeThreads < 1) {
+                    System.err.println("--threads and --decode-threads must be at least 1");
+                    return CLI.Exit.USAGE;
+                }
+                if (decodeMemoryMb < 1 || maxDecodePixels < 1) {
+                    System.err.println("--decode-memory and --max-decode-pixels must be at least 1");
+                    return CLI.Exit.USAGE;
+                }
+                List<Hasher> hashers;
+                try {
+                    hashers = Hashers.parse(algo);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown --algo: " + e.getMessage());
+                    return CLI.Exit.USAGE;
+                }
+                if (dihedral && hashers.stream().anyMatch(h -> h.bits() != 64)) {
+                    System.err.println("--dihedral works with 64-bit hashers only");
+                    return CLI.Exit.USAGE;
+                }
+                if (!Files.exists(root)) throw new NoSuchFileException(root.toString());
+                Path cacheDir = Files.isDirectory(root) ? root : root.toAbsolutePath().getParent();
+                HashCache hashCache = noCache ? null : HashCache.load(cache != null ? cache : cacheDir.resolve(HashCache.DEFAULT_NAME));
+
+                ImageFileFilter filter = new ImageFileFilter(sniff);
+                SortedMap<String, long[]> id2hash;
+                HashPipeline pipeline;
+                try (DecodeBudget budget = new DecodeBudget(decodeMemoryMb << 20)) {
+                    pipeline = new HashPipeline(hashers, decodeThreads, threads)
+                            .withCache(hashCache)
+                            .withThumbnails(useThumbnails)
+                            .withDihedral(dihedral)
+                            .withExactDuplicates(exactDuplicates)
+                            .withDecodeBudget(budget, maxDecodePixels);
+                    id2hash = pipeline.run(root, filter);
+                }
+
+                if (hashCache != null) {
+                    try {
+                        hashCache.save(root);
+                    } catch (Exception e) {
+                        System.err.println("Warning: could not write hash cache " + hashCache.file() + " (" + e.getMessage() + ")");
                     }
-                };
-                if (hasher == null) return CLI.Exit.USAGE;
-
-                Index index = new BKTreeIndex();
-                Map<String, Long> id2hash = new LinkedHashMap<>();
-
-                try (var paths = Files.walk(root)) {
-                    paths.filter(Files::isRegularFile)
-                            .filter(p -> p.toString().matches("(?i).*\\.(jpg|jpeg|png|bmp)"))
-                            .forEach(p -> {
-                                try {
-                                    BufferedImage img = ImageLoader.load(p);
-                                    long h = hasher.hash(img);
-                                    index.add(h, p.toString());
-                                    id2hash.put(p.toString(), h);
-                                } catch (Exception e) {
-                                    System.err.println("Skip " + p + " (" + e.getMessage() + ")");
-                                }
-                            });
                 }
 
-                // persist simple CSV: path, unsignedHash
-                var lines = id2hash.entrySet().stream()
-                        .map(e -> e.getKey() + "," + Long.toUnsignedString(e.getValue()))
-                        .toList();
+                // persist CSV: path, unsignedHash per algorithm[, variants per algorithm][, source][, exact] (header only when several)
+                List<String> columns = new ArrayList<>(hashers.stream().map(Hasher::name).toList());
+                Set<String> thumbnailed = pipeline.thumbnailed();
+                List<String[]> rows = new ArrayList<>(id2hash.size());
+                int n = hashers.size(), cols = dihedral ? 2 * n : n;
+                List<ExactDuplicates.Group> groups = pipeline.exactGroups();
+                Map<String, Integer> groupOf = new HashMap<>();
+                for (int g = 0; g < groups.size(); g++) {
+                    for (Path p : groups.get(g).paths()) groupOf.put(p.toString(), g + 1);
+                }
+                for (var e : id2hash.entrySet()) {
+                    long[] h = e.getValue();
+                    String[] row = new String[cols + 1 + (useThumbnails ? 1 : 0) + (exactDuplicates ? 1 : 0)];
+                    row[0] = e.getKey();
+                    for (int i = 0, off = 0; i < n; i++) {
+                        int words = dihedral ? 8 : hashers.get(i).bits() / 64;
+                        row[i + 1] = words == 1 || dihedral ? Long.toUnsignedString(h[off])
+                                : new WideHash(Arrays.copyOfRange(h, off, off + words)).toString();
+                        if (dihedral) row[n + i + 1] = new WideHash(Arrays.copyOfRange(h, off, off + words)).toString();
+                        off += words;
+                    }
+                    if (useThumbnails) row[cols + 1] = thumbnailed.contains(e.getKey()) ? SOURCE_THUMBNAIL : SOURCE_IMAGE;
+                    if (exactDuplicates) row[row.length - 1] = String.valueOf(groupOf.getOrDefault(e.getKey(), 0));
+                    rows.add(row);
+                }
+                if (dihedral) hashers.forEach(h -> columns.add(h.name() + HashCsv.DIHEDRAL));
+                if (useThumbnails) columns.add(SOURCE);
+                if (exactDuplicates) columns.add(EXACT);
 
                 // Ensure out is placed into a dot-prefixed temp folder when it's a simple filename
                 Path finalOut = placeInDotTempIfNoParent(out);
-                Files.write(finalOut, lines);
+                HashCsv.write(finalOut, columns, rows);
 
-                System.out.printf("Hashed %d images with %s -> %s%n", id2hash.size(), hasher.name(), finalOut);
+                System.out.printf("Hashed %d images with %s -> %s%n", id2hash.size(),
+                        hashers.stream().map(Hasher::name).collect(Collectors.joining("+")), finalOut);
+                if (sniff) {
+                    System.out.printf("Sniffed: %s%n", filter.counts().entrySet().stream()
+                            .map(e -> e.getKey() + " " + e.getValue()).collect(Collectors.joining(", ")));
+                }
+                if (exactDuplicates) {
+                    int files = groups.stream().mapToInt(g -> g.paths().size()).sum();
+                    System.out.printf("Exact duplicates: %d files in %d groups (%d hardlinks), %d not decoded%n", files, groups.size(),
+                            groups.stream().mapToInt(ExactDuplicates.Group::hardlinks).sum(), files - groups.size());
+                }
+                if (useThumbnails) {
+                    System.out.printf("Sources: %d embedded thumbnails, %d full images%n",
+                            thumbnailed.size(), id2hash.size() - thumbnailed.size());
+                }
+                if (hashCache != null) {
+                    System.out.printf("Cache: %d hits, %d misses (%s)%n", hashCache.hits(), hashCache.misses(), hashCache.file());
+                }
                 return CLI.Exit.OK;
 
             } catch (NoSuchFileException e) {
@@ -117,30 +220,94 @@ public final class Commands {
         @Parameters(index = "0", paramLabel = "INDEX", description = "CSV produced by 'hash' (path,hash)")
         Path indexCsv;
 
-        @Option(names = "--radius", defaultValue = "10", description = "Hamming radius (0..64)")
+        @Option(names = "--radius", defaultValue = "10", description = "Hamming radius (0..hash bits)")
         int radius;
 
         @Option(names = "--out", defaultValue = "clusters.csv", description = "Output clusters CSV")
         Path out;
 
+        @Option(names = "--algo", description = "Hash column to cluster on for multi-hash indexes (default: pHash if present)")
+        String algo;
+
+        @Option(names = "--index", defaultValue = "bktree",
+                description = "Search structure: bktree|flat|mih (mih = multi-index hashing, fastest at large radii)")
+        String indexType = "bktree";
+
+        @Option(names = "--dihedral",
+                description = "Also match rotated and mirrored copies; needs an index hashed with 'hash --dihedral'")
+        boolean dihedral;
+
+        @Option(names = "--candidates", paramLabel = "COLUMN",
+                description = "Cascade: find candidate pairs on this cheaper hash column (e.g. aHash, dHash) within "
+                        + "--candidate-radius, then keep only pairs whose --algo hashes are within --radius")
+        String candidates;
+
+        @Option(names = "--candidate-radius", description = "Hamming radius for --candidates (default: ${DEFAULT-VALUE})")
+        int candidateRadius = 16;
+
         @Override
         public Integer call() {
             try {
                 // load index
-                Map<String, Long> id2hash = new LinkedHashMap<>();
-                BKTreeIndex idx = new BKTreeIndex();
+                Hasher hasher;
+                try {
+                    hasher = Hashers.byName(HashCsv.resolve(indexCsv, algo));
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    return CLI.Exit.USAGE;
+                }
+                if (!Indexes.NAMES.contains(indexType.trim().toLowerCase())) {
+                    System.err.println("Unknown --index: " + indexType);
+                    return CLI.Exit.USAGE;
+                }
 
-                for (String line : Files.readAllLines(indexCsv)) {
-                    if (line.isBlank()) continue;
-                    int comma = line.lastIndexOf(',');
-                    if (comma <= 0) continue;
-                    String path = line.substring(0, comma);
-                    long hash = Long.parseUnsignedLong(line.substring(comma + 1).trim());
-                    id2hash.put(path, hash);
-                    idx.add(hash, path);
+                if (candidates != null && (dihedral || (hasher != null && hasher.bits() > 64))) {
+                    System.err.println("--candidates works with 64-bit columns and without --dihedral");
+                    return CLI.Exit.USAGE;
                 }
 
-                var clusters = Clusterer.cluster(id2hash, idx, radius);
+                List<cluster.Cluster> clusters;
+                if (candidates != null) {
+                    Map<String, Long> cheap, strong;
+                    try {
+                        cheap = HashCsv.read(indexCsv, candidates);
+                        strong = HashCsv.read(indexCsv, algo);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println(e.getMessage());
+                        return CLI.Exit.USAGE;
+                    }
+                    Index index = Indexes.create(indexType, cheap.size());
+                    cheap.forEach((path, hash) -> index.add(hash, path));
+                    Clusterer.Cascade cascade = Clusterer.cascade(cheap, index, candidateRadius, strong, radius);
+                    clusters = cascade.clusters();
+                    System.out.printf("Candidate edges: %d (%s within %d), verified: %d (%s within %d)%n",
+                            cascade.candidateEdges(), HashCsv.resolve(indexCsv, candidates), candidateRadius,
+                            cascade.verifiedEdges(), HashCsv.resolve(indexCsv, algo), radius);
+                } else if (dihedral) {
+                    // Index the plain hashes, query with all 8 variants of each image
+                    String column = HashCsv.resolve(indexCsv, algo);
+                    Map<String, WideHash> variants;
+                    try {
+                        variants = HashCsv.readWide(indexCsv, column + HashCsv.DIHEDRAL);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("No dihedral variants for " + column + "; hash with --dihedral first");
+                        return CLI.Exit.USAGE;
+                    }
+                    Index index = Indexes.create(indexType, variants.size());
+                    variants.forEach((path, v) -> index.add(v.words()[0], path));
+                    clusters = Clusterer.clusterDihedral(variants, index, radius);
+                } else if (hasher != null && hasher.bits() > 64) {
+                    // Wide columns always use multi-index hashing over their 16-bit substrings
+                    Map<String, WideHash> id2hash = HashCsv.readWide(indexCsv, algo);
+                    WideIndex wide = new WideMultiIndexHashIndex(hasher.bits());
+                    id2hash.forEach((path, hash) -> wide.add(hash, path));
+                    clusters = Clusterer.cluster(id2hash, wide, radius);
+                } else {
+                    Map<String, Long> id2hash = HashCsv.read(indexCsv, algo);
+                    Index index = Indexes.create(indexType, id2hash.size());
+                    id2hash.forEach((path, hash) -> index.add(hash, path));
+                    clusters = Clusterer.cluster(id2hash, index, radius);
+                }
 
                 // Write clusters: clusterId,path
                 List<String> rows = new ArrayList<>();
@@ -257,10 +424,13 @@ public final class Commands {
             try {
                 long size = Files.size(p);
                 long mtime = Files.getLastModifiedTime(p).toMillis();
-                // Fast dimension probe: read minimally (okay for JPEG/PNG). If you want ultra-fast,
-                // you can use metadata-extractor to read dimensions without full decode.
-                var img = javax.imageio.ImageIO.read(p.toFile());
-                long pixels = (img != null) ? (long) img.getWidth() * img.getHeight() : -1;
+                // Header-only dimension probe; falls back to a full decode only if the header is unreadable
+                long pixels;
+                try {
+                    pixels = ImageProbe.probe(p).pixels();
+                } catch (Exception e) {
+                    pixels = -1;
+                }
                 return new FileMeta(pixels, size, mtime);
             } catch (Exception e) {
                 return new FileMeta(-1, -1, Long.MAX_VALUE); // penalize unreadables
@@ -0,0 +1,208 @@
+package app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Groups byte-identical files before anything is decoded.
+ *
+ * Each step only looks at the candidates the previous one left:
+ * <ol>
+ *   <li>the file key (device and inode), which joins hardlinks and repeated paths without
+ *       reading anything;</li>
+ *   <li>the size;</li>
+ *   <li>a CRC32C of the first and last {@link #PARTIAL} bytes;</li>
+ *   <li>a CRC32C of the whole file, read through memory maps, for files longer than both
+ *       partial blocks.</li>
+ * </ol>
+ * Files left in a group of two or more are treated as copies. The test is a checksum, not a
+ * byte comparison, but it only runs on files that already match in size and in both ends.
+ *
+ * Both checksums of a file can be remembered between runs ({@link Checksums}), so grouping an
+ * unchanged tree again costs one stat per file and no reads.
+ */
+final class ExactDuplicates {
+
+    static final int PARTIAL = 64 * 1024;
+    private static final long MAP_CHUNK = 1L << 30;
+
+    /** One file per group, the path-wise first, stands for the others. */
+    record Group(List<Path> paths, int hardlinks) {
+        Path representative() { return paths.getFirst(); }
+    }
+
+    /**
+     * Content checksums kept between runs, valid for one size and mtime of a file: the partial
+     * CRC32C in the upper 32 bits, the full one (0 for files of up to two partial blocks) in
+     * the lower 32.
+     */
+    interface Checksums {
+        Checksums NONE = new Checksums() {
+            @Override public Long get(Path path, long size, long mtime) { return null; }
+            @Override public void put(Path path, long size, long mtime, long checksum) {}
+        };
+
+        Long get(Path path, long size, long mtime);
+
+        void put(Path path, long size, long mtime, long checksum);
+    }
+
+    private static final class Stat {
+        final Path path;
+        final long size, mtime;
+        final Object key;
+        Object partial, full; // known or computed on demand; other than a Long if unreadable
+
+        Stat(Path path, long size, long mtime, Object key) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.key = key;
+        }
+
+        boolean small() { return size <= 2L * PARTIAL; }
+    }
+
+    private ExactDuplicates() {}
+
+    /** {@link #group(List, Checksums)} without remembered checksums. */
+    static List<Group> group(List<Path> files) {
+        return group(files, Checksums.NONE);
+    }
+
+    /**
+     * Partitions {@code files} into groups of identical content. Every file is in exactly one
+     * group; groups and their members are sorted by path. Files that cannot be stat'ed or read
+     * stay alone, for the pipeline to report. Checksums found in {@code known} are not
+     * recomputed, and those computed here are handed to it.
+     */
+    static List<Group> group(List<Path> files, Checksums known) {
+        List<Path> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparing(Path::toString));
+
+        // Same inode: one stat, no reads
+        Map<Object, List<Stat>> byKey = new LinkedHashMap<>();
+        List<List<Stat>> alone = new ArrayList<>();
+        for (Path p : sorted) {
+            try {
+                var attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                Stat s = new Stat(p, attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.fileKey());
+                if (s.key == null) alone.add(new ArrayList<>(List.of(s)));
+                else byKey.computeIfAbsent(s.key, k -> new ArrayList<>()).add(s);
+            } catch (IOException e) {
+                alone.add(new ArrayList<>(List.of(new Stat(p, -1, 0, null))));
+            }
+        }
+        List<List<Stat>> inodes = new ArrayList<>(byKey.values());
+        inodes.addAll(alone);
+
+        // Then size, partial and full checksum, each on the first file of every inode
+        List<List<List<Stat>>> candidates = List.of(inodes);
+        candidates = split(candidates, s -> s.size < 0 ? s.path : s.size);
+        for (List<List<Stat>> c : candidates) {
+            if (c.size() == 1) continue;
+            for (List<Stat> inode : c) {
+                Stat s = inode.getFirst();
+                Long sum = known.get(s.path, s.size, s.mtime);
+                if (sum == null) continue;
+                s.partial = sum >>> 32;
+                s.full = sum & 0xFFFFFFFFL;
+            }
+        }
+        candidates = split(candidates, s -> s.partial != null ? s.partial : (s.partial = checksum(s, false)));
+        candidates = split(candidates, s -> s.small() ? 0L : s.full != null ? s.full : (s.full = checksum(s, true)));
+        remember(inodes, known);
+
+        List<Group> out = new ArrayList<>();
+        for (List<List<Stat>> c : candidates) {
+            List<Path> paths = new ArrayList<>();
+            int hardlinks = 0;
+            for (List<Stat> inode : c) {
+                for (Stat s : inode) paths.add(s.path);
+                hardlinks += inode.size() - 1;
+            }
+            paths.sort(Comparator.comparing(Path::toString));
+            out.add(new Group(List.copyOf(paths), hardlinks));
+        }
+        out.sort(Comparator.comparing(g -> g.representative().toString()));
+        return out;
+    }
+
+    // Hands newly complete checksums to every path of the inode, so any of them finds it next time
+    private static void remember(List<List<Stat>> inodes, Checksums known) {
+        for (List<Stat> inode : inodes) {
+            Stat first = inode.getFirst();
+            if (!(first.partial instanceof Long p)) continue;
+            long full;
+            if (first.small()) full = 0;
+            else if (first.full instanceof Long f) full = f;
+            else continue;
+            long sum = p << 32 | full;
+            for (Stat s : inode) {
+                if (!Long.valueOf(sum).equals(known.get(s.path, s.size, s.mtime))) known.put(s.path, s.size, s.mtime, sum);
+            }
+        }
+    }
+
+    // Splits every candidate set of inodes by key; sets of one inode are not checked further
+    private static List<List<List<Stat>>> split(List<List<List<Stat>>> candidates, Function<Stat, Object> key) {
+        List<List<List<Stat>>> out = new ArrayList<>();
+        for (List<List<Stat>> c : candidates) {
+            if (c.size() == 1) {
+                out.add(c);
+                continue;
+            }
+            Map<Object, List<List<Stat>>> byKey = new LinkedHashMap<>();
+            for (List<Stat> inode : c) byKey.computeIfAbsent(key.apply(inode.getFirst()), k -> new ArrayList<>()).add(inode);
+            out.addAll(byKey.values());
+        }
+        return out;
+    }
+
+    /**
+     * CRC32C of the first and last {@link #PARTIAL} bytes, or of the whole file; a unique
+     * object when the file cannot be read, so it matches nothing.
+     */
+    private static Object checksum(Stat s, boolean full) {
+        CRC32C crc = new CRC32C();
+        try (FileChannel ch = FileChannel.open(s.path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (full) {
+                for (long pos = 0; pos < size; pos += MAP_CHUNK) {
+                    MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_CHUNK, size - pos));
+                    crc.update(map);
+                }
+            } else {
+                ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, 2L * PARTIAL));
+                read(ch, buf, 0, Math.min(size, PARTIAL));
+                if (size > PARTIAL) read(ch, buf, Math.max(PARTIAL, size - PARTIAL), size);
+                crc.update(buf.flip());
+            }
+            return crc.getValue();
+        } catch (IOException e) {
+            return new Object();
+        }
+    }
+
+    private static void read(FileChannel ch, ByteBuffer buf, long from, long to) throws IOException {
+        for (long pos = from; pos < to; ) {
+            buf.limit(buf.position() + (int) (to - pos));
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("File shrank while reading");
+            pos += n;
+        }
+    }
+}
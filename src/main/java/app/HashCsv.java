@@ -0,0 +1,122 @@
+package app;
+
+import hash.WideHash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the index CSV produced by {@code hash}.
+ *
+ * A single-column index keeps the original headerless {@code path,hash} layout. With more
+ * than one column (several hashers, or extra per-file fields) a header row
+ * {@code path,<col>,<col>...} is written first. Values are taken from the right, so paths
+ * containing commas survive in both layouts. Hashes up to 64 bits are unsigned decimals,
+ * wider ones fixed-width hex ({@link WideHash}).
+ */
+public final class HashCsv {
+
+    public static final String PATH = "path";
+    /** Suffix of the column holding a hasher's 8 dihedral variants, written by {@code hash --dihedral}. */
+    public static final String DIHEDRAL = "-d8";
+
+    private HashCsv() {}
+
+    public static void write(Path out, List<String> columns, List<String[]> rows) throws IOException {
+        List<String> lines = new ArrayList<>(rows.size() + 1);
+        if (columns.size() > 1) lines.add(PATH + "," + String.join(",", columns));
+        for (String[] r : rows) lines.add(String.join(",", r));
+        Files.write(out, lines);
+    }
+
+    /**
+     * Loads one hash column as {@code path -> hash}, in file order.
+     *
+     * @param column header name to read (case-insensitive); {@code null} picks pHash when
+     *               present, otherwise the first column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public static Map<String, Long> read(Path in, String column) throws IOException {
+        Map<String, Long> out = new LinkedHashMap<>();
+        readColumn(in, column, (path, value) -> out.put(path, Long.parseUnsignedLong(value)));
+        return out;
+    }
+
+    /** Like {@link #read}, for a column of {@link WideHash} hex values. */
+    public static Map<String, WideHash> readWide(Path in, String column) throws IOException {
+        Map<String, WideHash> out = new LinkedHashMap<>();
+        readColumn(in, column, (path, value) -> out.put(path, WideHash.parse(value)));
+        return out;
+    }
+
+    /**
+     * Name of the column {@link #read} loads for {@code column}.
+     *
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public static String resolve(Path in, String column) throws IOException {
+        List<String> cols = columns(in);
+        return cols.get(pick(cols, column));
+    }
+
+    /** Header columns (without {@code path}); a legacy headerless index has the single column {@code hash}. */
+    public static List<String> columns(Path in) throws IOException {
+        try (var lines = Files.lines(in)) {
+            String first = lines.filter(l -> !l.isBlank()).findFirst().orElse("");
+            return isHeader(first) ? List.of(first.substring(PATH.length() + 1).split(",")) : List.of("hash");
+        }
+    }
+
+    interface ColumnConsumer {
+        void accept(String path, String value);
+    }
+
+    static void readColumn(Path in, String column, ColumnConsumer sink) throws IOException {
+        List<String> lines = Files.readAllLines(in);
+        List<String> cols = List.of("hash");
+        int start = 0;
+        while (start < lines.size() && lines.get(start).isBlank()) start++;
+        if (start < lines.size() && isHeader(lines.get(start))) {
+            cols = List.of(lines.get(start).substring(PATH.length() + 1).split(","));
+            start++;
+        }
+        int col = pick(cols, column);
+
+        int n = cols.size();
+        int[] commas = new int[n]; // commas[0] is the rightmost
+        for (int i = start; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) continue;
+            int from = line.length();
+            boolean ok = true;
+            for (int k = 0; k < n && ok; k++) {
+                commas[k] = line.lastIndexOf(',', from - 1);
+                ok = commas[k] > 0;
+                from = commas[k];
+            }
+            if (!ok) continue;
+            int k = n - 1 - col;
+            String value = line.substring(commas[k] + 1, k == 0 ? line.length() : commas[k - 1]).trim();
+            if (!value.isEmpty()) sink.accept(line.substring(0, commas[n - 1]), value);
+        }
+    }
+
+    private static boolean isHeader(String line) {
+        return line.regionMatches(true, 0, PATH + ",", 0, PATH.length() + 1);
+    }
+
+    private static int pick(List<String> cols, String column) {
+        if (column == null) {
+            for (int i = 0; i < cols.size(); i++) if (cols.get(i).equalsIgnoreCase("pHash")) return i;
+            return 0;
+        }
+        for (int i = 0; i < cols.size(); i++) if (cols.get(i).equalsIgnoreCase(column)) return i;
+        if (cols.size() == 1 && cols.getFirst().equals("hash")) return 0; // legacy index: one unnamed column
+        throw new IllegalArgumentException("No column '" + column + "' in index (have " + cols + ")");
+    }
+}
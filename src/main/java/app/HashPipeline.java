@@ -0,0 +1,435 @@
+package app;
+
+import cache.HashCache;
+import core.DecodeBudget;
+import core.Exif;
+import core.ImageLoader;
+import core.ImageProbe;
+import core.JpegDcDecoder;
+import core.LumaGrid;
+import core.ScanlineLuma;
+import hash.Hasher;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Staged hashing pipeline: walk -> read -> decode -> hash -> sink.
+ *
+ * Each stage runs on its own worker threads and hands work to the next one through a
+ * bounded queue, so a slow stage applies back-pressure instead of letting decoded images
+ * pile up. The walk runs on a dedicated thread, the sink on the caller's thread. Results
+ * are collected by path, so the output order does not depend on scheduling.
+ *
+ * JPEGs are reduced to their DC plane ({@link JpegDcDecoder}) and PNG/BMP files streamed
+ * into the grid ({@link ScanlineLuma}) in the decode stage when possible; everything else
+ * goes through the subsampled {@link ImageLoader} decode. The read stage sniffs each file
+ * and only reads JPEGs into memory; PNG and BMP are streamed from a memory mapping, and
+ * whatever the streaming decoder rejects is decoded through a mapping as well
+ * ({@link ImageLoader#decodeForHash(Path, int, long)}).
+ *
+ * With a {@link DecodeBudget}, each pixel decode first acquires its estimated raster size,
+ * read from the header, and gives it back once the hash stage has reduced the image to its
+ * grid, bounding the decoded pixels in flight regardless of thread count.
+ *
+ * With thumbnails enabled, JPEGs with a usable embedded EXIF thumbnail are hashed from it
+ * instead of the main image.
+ *
+ * With exact-duplicate grouping, the walk lists every file first and sends one file per
+ * group of byte-identical copies ({@link ExactDuplicates}); the sink gives its hashes to the
+ * rest of the group. With a cache as well, the content checksums are cached too, so unchanged
+ * files are grouped again without being read.
+ *
+ * With a {@link HashCache}, the read stage stats each file first; files whose size, mtime
+ * and hashers all match go straight to the sink without being read or decoded.
+ */
+final class HashPipeline {
+
+    /** Per-file work item; each stage fills its field and drops the previous one. */
+    private static final class Task {
+        final Path path;
+        final String format; // as sniffed by the walk's filter, or ImageFileFilter.NOT_SNIFFED
+        long size, mtime;
+        boolean cached, thumbnail, streamed;
+        int orientation = 1;
+        long permit;
+        byte[] bytes;
+        BufferedImage image;
+        LumaGrid grid;
+        long[] hashes;
+
+        Task(Path path, String format) {
+            this.path = path;
+            this.format = format;
+        }
+    }
+
+    private interface Decode {
+        BufferedImage run() throws Exception;
+    }
+
+    private interface Step {
+        /** @return false if the task must not be forwarded (dropped and reported, or routed elsewhere) */
+        boolean apply(Task t) throws Exception;
+    }
+
+    private static final Task DONE = new Task(null, null);
+
+    /** Sniffed formats that {@link ScanlineLuma} decodes from the file without reading it into memory. */
+    private static final Set<String> STREAMED = Set.of("png", "bmp");
+
+    private static final String CONTENT_KEY = "content.crc32c";
+    private static final String THUMB = "+thumb";
+    private static final String SOURCE_KEY = "source" + THUMB + "." + ImageLoader.HASH_DECODE_REVISION;
+
+    private final List<Hasher> hashers;
+    private final int readThreads, decodeThreads, hashThreads;
+    private final int capacity;
+    private final List<String> skipped = new ArrayList<>();
+    private final Set<String> thumbnailed = ConcurrentHashMap.newKeySet();
+    private final Map<String, ExactDuplicates.Group> copies = new ConcurrentHashMap<>();
+    private HashCache cache;
+    private boolean thumbnails;
+    private boolean dihedral;
+    private boolean exact;
+    private DecodeBudget budget;
+    private long maxDecodePixels = Long.MAX_VALUE;
+
+    HashPipeline(List<Hasher> hashers, int decodeThreads, int hashThreads) {
+        if (decodeThreads < 1 || hashThreads < 1) throw new IllegalArgumentException("Thread counts must be positive");
+        this.hashers = List.copyOf(hashers);
+        this.decodeThreads = decodeThreads;
+        this.hashThreads = hashThreads;
+        this.readThreads = Math.max(2, decodeThreads / 4);
+        this.capacity = 2 * Math.max(decodeThreads, hashThreads);
+    }
+
+    /** Consult and update {@code cache}; {@code null} disables caching. */
+    HashPipeline withCache(HashCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /** Hash JPEGs from their embedded EXIF thumbnail when it is usable (see {@link ImageLoader#decodeThumbnailForHash}). */
+    HashPipeline withThumbnails(boolean thumbnails) {
+        this.thumbnails = thumbnails;
+        return this;
+    }
+
+    /**
+     * Admit pixel decodes against {@code budget} (estimated from the header before decoding;
+     * {@code null} disables admission control), and subsample any image that would still
+     * decode to more than {@code maxPixels} pixels.
+     */
+    HashPipeline withDecodeBudget(DecodeBudget budget, long maxPixels) {
+        this.budget = budget;
+        this.maxDecodePixels = maxPixels;
+        return this;
+    }
+
+    /**
+     * Produce all 8 dihedral variants ({@link Hasher#dihedral}) per hasher instead of its
+     * single hash, plain hash first; 64-bit hashers only.
+     */
+    HashPipeline withDihedral(boolean dihedral) {
+        if (dihedral && hashers.stream().anyMatch(h -> h.bits() != 64))
+            throw new IllegalArgumentException("Dihedral variants need 64-bit hashers");
+        this.dihedral = dihedral;
+        return this;
+    }
+
+    /** Group byte-identical files first and hash one file per group (see {@link ExactDuplicates}). */
+    HashPipeline withExactDuplicates(boolean exact) {
+        this.exact = exact;
+        return this;
+    }
+
+    /** Groups of two or more byte-identical files found by the last run, by representative path. */
+    List<ExactDuplicates.Group> exactGroups() {
+        return copies.values().stream().sorted(Comparator.comparing(g -> g.representative().toString())).toList();
+    }
+
+    /** Paths whose hashes came from an embedded thumbnail rather than the main image, in the last run. */
+    Set<String> thumbnailed() {
+        return Set.copyOf(thumbnailed);
+    }
+
+    /** Files the last run dropped, with the reason, in the order they failed. */
+    List<String> skipped() {
+        synchronized (skipped) { return List.copyOf(skipped); }
+    }
+
+    /**
+     * Hashes every regular file under {@code root} accepted by {@code filter}.
+     *
+     * @return path -> hashes of all hashers in order, {@code bits() / 64} words each (8 with
+     *         dihedral variants), sorted by path
+     */
+    SortedMap<String, long[]> run(Path root, Predicate<Path> filter) throws Exception {
+        copies.clear();
+        thumbnailed.clear();
+        synchronized (skipped) { skipped.clear(); }
+        BlockingQueue<Task> paths = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Task> read = new ArrayBlockingQueue<>(decodeThreads); // holds whole files
+        BlockingQueue<Task> decoded = new ArrayBlockingQueue<>(Math.max(2, hashThreads));
+        BlockingQueue<Task> hashed = new ArrayBlockingQueue<>(capacity);
+
+        AtomicReference<Exception> walkError = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(Thread.ofPlatform().name("idf-walk").daemon().start(() -> {
+            // A sniffing filter's verdict rides along, so the read stage does not open the file for it again
+            Function<Path, String> accept = filter instanceof ImageFileFilter f ? f::accept
+                    : p -> filter.test(p) ? ImageFileFilter.NOT_SNIFFED : null;
+            try (var stream = Files.walk(root)) {
+                var it = stream.filter(Files::isRegularFile).iterator();
+                if (exact) {
+                    // Needs the whole listing first: only one file per group of copies goes on
+                    Map<Path, String> all = new HashMap<>();
+                    while (it.hasNext()) {
+                        Path p = it.next();
+                        String format = accept.apply(p);
+                        if (format != null) all.put(p, format);
+                    }
+                    for (ExactDuplicates.Group g : ExactDuplicates.group(List.copyOf(all.keySet()), checksums())) {
+                        if (g.paths().size() > 1) copies.put(g.representative().toString(), g);
+                        paths.put(new Task(g.representative(), all.get(g.representative())));
+                    }
+                } else {
+                    while (it.hasNext()) {
+                        Path p = it.next();
+                        String format = accept.apply(p);
+                        if (format != null) paths.put(new Task(p, format));
+                    }
+                }
+            } catch (Exception e) {
+                walkError.set(e);
+            } finally {
+                poison(paths, readThreads);
+            }
+        }));
+
+        // Thumbnail runs cache under their own keys, plus a 0/1 entry recording the source
+        List<String> keys = new ArrayList<>(hashers.stream().flatMap(h -> cacheKeys(h).stream())
+                .map(k -> k + (thumbnails ? THUMB : "")).toList());
+        int n = keys.size();
+        if (thumbnails) keys.add(SOURCE_KEY);
+        threads.addAll(stage("idf-read-", readThreads, paths, read, decodeThreads, t -> {
+            if (cache != null) {
+                var attrs = Files.readAttributes(t.path, BasicFileAttributes.class);
+                t.size = attrs.size();
+                t.mtime = attrs.lastModifiedTime().toMillis();
+                long[] h = cache.lookup(t.path.toString(), t.size, t.mtime, keys);
+                if (h != null) {
+                    // Unchanged since the last run: skip read, decode and hash
+                    t.hashes = Arrays.copyOf(h, n);
+                    t.thumbnail = thumbnails && h[n] == 1;
+                    t.cached = true;
+                    hashed.put(t);
+                    return false;
+                }
+            }
+            // Only JPEGs are read into memory (DC plane, EXIF thumbnail); the rest is decoded from the file
+            String format = t.format.equals(ImageFileFilter.NOT_SNIFFED) ? ImageFileFilter.sniff(t.path) : t.format;
+            if (format.equals("jpeg")) t.bytes = Files.readAllBytes(t.path);
+            else t.streamed = STREAMED.contains(format);
+            return true;
+        }));
+        threads.addAll(stage("idf-decode-", decodeThreads, read, decoded, hashThreads, t -> {
+            if (t.bytes == null) {
+                t.orientation = Exif.readOrientationSafe(t.path);
+                // PNG and BMP stream row by row into the grid, in constant memory
+                if (t.streamed) t.grid = ScanlineLuma.lumaGrid(t.path, Hasher.GRID, Hasher.GRID);
+                // Interlaced, compressed or other formats: subsampled decode through a mapping
+                if (t.grid == null) t.image = decodePixels(t, ImageProbe.probeHeader(t.path),
+                        () -> ImageLoader.decodeForHash(t.path, ImageLoader.HASH_MIN_SIDE, maxDecodePixels));
+                return true;
+            }
+            // Orientation is applied to the grid in the hash stage, not to the decoded pixels
+            t.orientation = Exif.readOrientation(t.bytes);
+            if (thumbnails && JpegDcDecoder.isJpeg(t.bytes)) {
+                t.image = ImageLoader.decodeThumbnailForHash(t.bytes);
+                t.thumbnail = t.image != null;
+            }
+            // JPEGs large enough for the DC plane to cover the grid skip pixel decoding entirely
+            if (t.image == null && JpegDcDecoder.isJpeg(t.bytes)) {
+                t.grid = JpegDcDecoder.lumaGrid(t.bytes, Hasher.GRID, Hasher.GRID, ImageLoader.HASH_MIN_SIDE / 8);
+            }
+            if (t.grid == null && t.image == null) {
+                byte[] data = t.bytes;
+                t.image = decodePixels(t, ImageProbe.probe(data),
+                        () -> ImageLoader.decodeForHash(data, t.path, ImageLoader.HASH_MIN_SIDE, maxDecodePixels));
+            }
+            t.bytes = null;
+            return true;
+        }));
+        threads.addAll(stage("idf-hash-", hashThreads, decoded, hashed, 1, t -> {
+            // One shared luma grid for every requested hasher
+            LumaGrid grid;
+            try {
+                grid = (t.grid != null ? t.grid : LumaGrid.of(t.image, Hasher.GRID, Hasher.GRID)).orient(t.orientation);
+                ImageLoader.recycle(t.image);
+            } finally {
+                releasePermit(t); // the raster is gone once the grid exists
+            }
+            t.image = null;
+            t.grid = null;
+            long[] h = new long[n];
+            for (int i = 0, off = 0; i < hashers.size(); i++) {
+                Hasher hs = hashers.get(i);
+                if (dihedral) {
+                    System.arraycopy(hs.dihedral(grid), 0, h, off, 8);
+                    off += 8;
+                } else if (hs.bits() == 64) {
+                    h[off++] = hs.hash(grid);
+                } else {
+                    long[] wide = hs.hashWide(grid);
+                    System.arraycopy(wide, 0, h, off, wide.length);
+                    off += wide.length;
+                }
+            }
+            t.hashes = h;
+            return true;
+        }));
+
+        SortedMap<String, long[]> out = new TreeMap<>();
+        for (Task t; (t = hashed.take()) != DONE; ) {
+            out.put(t.path.toString(), t.hashes);
+            if (t.thumbnail) thumbnailed.add(t.path.toString());
+            ExactDuplicates.Group g = copies.get(t.path.toString());
+            if (g != null) {
+                for (Path p : g.paths()) {
+                    out.put(p.toString(), t.hashes);
+                    if (t.thumbnail) thumbnailed.add(p.toString());
+                }
+            }
+            if (cache != null && !t.cached) {
+                long[] entry = t.hashes;
+                if (thumbnails) {
+                    entry = Arrays.copyOf(t.hashes, n + 1);
+                    entry[n] = t.thumbnail ? 1 : 0;
+                }
+                cache.put(t.path.toString(), t.size, t.mtime, keys, entry);
+            }
+        }
+        for (Thread th : threads) th.join();
+
+        if (walkError.get() != null) throw walkError.get();
+        return out;
+    }
+
+    private List<Thread> stage(String name, int workers, BlockingQueue<Task> in, BlockingQueue<Task> out,
+                               int downstream, Step step) {
+        AtomicInteger alive = new AtomicInteger(workers);
+        List<Thread> threads = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofPlatform().name(name + i).daemon().start(() -> {
+                try {
+                    for (Task t; (t = in.take()) != DONE; ) {
+                        boolean keep;
+                        try {
+                            keep = step.apply(t);
+                        } catch (Exception e) {
+                            skip(t.path, e);
+                            keep = false;
+                        }
+                        if (keep) out.put(t);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // The last worker of a stage closes the next one
+                    if (alive.decrementAndGet() == 0) poison(out, downstream);
+                }
+            }));
+        }
+        return threads;
+    }
+
+    /** Content checksums for {@link ExactDuplicates}, kept in the hash cache next to the hashes. */
+    private ExactDuplicates.Checksums checksums() {
+        if (cache == null) return ExactDuplicates.Checksums.NONE;
+        return new ExactDuplicates.Checksums() {
+            @Override
+            public Long get(Path path, long size, long mtime) {
+                return cache.get(path.toString(), size, mtime, CONTENT_KEY);
+            }
+
+            @Override
+            public void put(Path path, long size, long mtime, long checksum) {
+                cache.put(path.toString(), size, mtime, List.of(CONTENT_KEY), new long[]{checksum});
+            }
+        };
+    }
+
+    // Orientation 1 keeps the plain hash's key, so plain runs reuse the entries of dihedral runs
+    private List<String> cacheKeys(Hasher h) {
+        if (!dihedral) return HashCache.keys(h);
+        List<String> out = new ArrayList<>(8);
+        out.add(HashCache.key(h));
+        for (int o = 2; o <= 8; o++) out.add(HashCache.key(h) + "~" + o);
+        return out;
+    }
+
+    /** Runs {@code decode} under the budget, holding the permit in {@code t} until the hash stage. */
+    private BufferedImage decodePixels(Task t, ImageProbe.Info header, Decode decode) throws Exception {
+        if (budget != null) t.permit = budget.acquire(estimatedBytes(header));
+        try {
+            return decode.run();
+        } catch (Exception e) {
+            releasePermit(t);
+            throw e;
+        }
+    }
+
+    /** Decoded raster size in bytes (4 per pixel, the widest layout), from the header alone. */
+    private long estimatedBytes(ImageProbe.Info info) {
+        if (info == null) return Long.MAX_VALUE; // unknown: admit it alone
+        int s = ImageLoader.subsampling(info.width(), info.height(), ImageLoader.HASH_MIN_SIDE, maxDecodePixels);
+        return 4 * ImageLoader.decodedPixels(info.width(), info.height(), s);
+    }
+
+    private void releasePermit(Task t) {
+        if (budget != null) budget.release(t.permit);
+        t.permit = 0;
+    }
+
+    // Copies of a failed representative are dropped with it, so they are reported too
+    private void skip(Path p, Exception e) {
+        List<String> msgs = new ArrayList<>();
+        msgs.add("Skip " + p + " (" + e.getMessage() + ")");
+        ExactDuplicates.Group g = copies.get(p.toString());
+        if (g != null) {
+            for (Path c : g.paths()) {
+                if (!c.equals(p)) msgs.add("Skip " + c + " (same content as " + p + ": " + e.getMessage() + ")");
+            }
+        }
+        msgs.forEach(System.err::println);
+        synchronized (skipped) { skipped.addAll(msgs); }
+    }
+
+    private static void poison(BlockingQueue<Task> q, int n) {
+        try {
+            for (int i = 0; i < n; i++) q.put(DONE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
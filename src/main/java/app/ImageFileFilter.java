@@ -0,0 +1,105 @@
+package app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Decides which walked files are handed to the hashing pipeline.
+ *
+ * By default a file qualifies by extension alone, compared against a fixed set without a
+ * regex. With sniffing, the first {@link #SNIFF_BYTES} bytes decide instead: images with a
+ * wrong or missing extension are picked up, and files that merely look like images by name
+ * (truncated downloads, HTML error pages, other formats) are dropped before the decoder
+ * sees them. Every sniffed file is counted under its detected format.
+ */
+final class ImageFileFilter implements Predicate<Path> {
+
+    static final int SNIFF_BYTES = 16;
+    static final Set<String> EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp");
+    /** Sniffed formats the decoders handle. */
+    static final Set<String> DECODABLE = Set.of("jpeg", "png", "bmp");
+    static final String UNKNOWN = "unknown", UNREADABLE = "unreadable";
+    /** {@link #accept} result for a file accepted by extension, without looking at its content. */
+    static final String NOT_SNIFFED = "";
+
+    private final boolean sniff;
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    ImageFileFilter(boolean sniff) {
+        this.sniff = sniff;
+    }
+
+    @Override
+    public boolean test(Path p) {
+        return accept(p) != null;
+    }
+
+    /**
+     * {@link #test} that also says what it found, so the pipeline need not sniff again: the
+     * sniffed format of an accepted file, {@link #NOT_SNIFFED} if only the extension was
+     * checked, or {@code null} if the file is rejected.
+     */
+    String accept(Path p) {
+        if (!sniff) return hasImageExtension(p) ? NOT_SNIFFED : null;
+        String format = sniff(p);
+        counts.computeIfAbsent(format, k -> new LongAdder()).increment();
+        return DECODABLE.contains(format) ? format : null;
+    }
+
+    static boolean hasImageExtension(Path p) {
+        Path name = p.getFileName();
+        if (name == null) return false;
+        String s = name.toString();
+        int dot = s.lastIndexOf('.');
+        return dot >= 0 && EXTENSIONS.contains(s.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /** Files seen per detected format, sorted by format; empty unless sniffing. */
+    Map<String, Long> counts() {
+        Map<String, Long> out = new TreeMap<>();
+        counts.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    /** {@link #format} of the file's first bytes, or {@link #UNREADABLE}. */
+    static String sniff(Path p) {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(p)) {
+            head = in.readNBytes(SNIFF_BYTES);
+        } catch (IOException e) {
+            return UNREADABLE;
+        }
+        return format(head);
+    }
+
+    /** Container format from a file's first bytes, or {@link #UNKNOWN}. */
+    static String format(byte[] b) {
+        int n = b.length;
+        if (n >= 3 && (b[0] & 0xff) == 0xFF && (b[1] & 0xff) == 0xD8 && (b[2] & 0xff) == 0xFF) return "jpeg";
+        if (n >= 8 && (b[0] & 0xff) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G' && b[4] == 0x0D && b[5] == 0x0A) return "png";
+        if (n >= 14 && b[0] == 'B' && b[1] == 'M') return "bmp";
+        if (n >= 6 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') return "gif";
+        if (n >= 4 && ((b[0] == 'I' && b[1] == 'I' && b[2] == 42 && b[3] == 0) || (b[0] == 'M' && b[1] == 'M' && b[2] == 0 && b[3] == 42))) return "tiff";
+        if (n >= 12 && ascii(b, 0, "RIFF") && ascii(b, 8, "WEBP")) return "webp";
+        if (n >= 12 && ascii(b, 4, "ftyp")) {
+            if (ascii(b, 8, "avif") || ascii(b, 8, "avis")) return "avif";
+            if (ascii(b, 8, "heic") || ascii(b, 8, "heix") || ascii(b, 8, "mif1") || ascii(b, 8, "msf1")) return "heif";
+            return "video";
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean ascii(byte[] b, int off, String s) {
+        for (int i = 0; i < s.length(); i++) if (b[off + i] != s.charAt(i)) return false;
+        return true;
+    }
+}
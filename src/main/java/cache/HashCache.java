@@ -0,0 +1,168 @@
+package cache;
+
+import core.ImageLoader;
+import hash.Hasher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent hash cache keyed by (path, size, mtime, hasher name/version).
+ *
+ * Stored as tab-separated text, one line per file and hasher:
+ * {@code size<TAB>mtime<TAB>hasher@version.revision<TAB>unsignedHash<TAB>path}. The path is last so it
+ * may contain any character except a newline, and is stored absolute and normalized. Other per-file values ({@link #get}) are stored
+ * the same way under their own key. A file whose size or mtime changed is a miss
+ * for every hasher. {@link #save(Path)} compacts: entries under the scanned root that were
+ * not seen in this run (deleted or renamed files) are dropped.
+ */
+public final class HashCache {
+
+    public static final String DEFAULT_NAME = ".idf-hash-cache";
+
+    private record Entry(long size, long mtime, Map<String, Long> hashes) {}
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private HashCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Cache key of a hasher: its name plus version and the decode-path revision, so changed
+     * algorithms or preprocessing never reuse stale values.
+     */
+    public static String key(Hasher h) {
+        return h.name() + "@" + h.version() + "." + ImageLoader.HASH_DECODE_REVISION;
+    }
+
+    /** Keys of a hasher's words: {@link #key} itself for 64 bits, {@code key#i} per word for wide hashers. */
+    public static List<String> keys(Hasher h) {
+        String k = key(h);
+        if (h.bits() == 64) return List.of(k);
+        List<String> out = new ArrayList<>(h.bits() / 64);
+        for (int i = 0; i < h.bits() / 64; i++) out.add(k + "#" + i);
+        return out;
+    }
+
+    /** Loads {@code file}; a missing file gives an empty cache, malformed lines are ignored. */
+    public static HashCache load(Path file) throws IOException {
+        HashCache c = new HashCache(file);
+        if (!Files.isRegularFile(file)) return c;
+        for (String line : Files.readAllLines(file)) {
+            String[] f = line.split("\t", 5);
+            if (f.length != 5 || f[4].isEmpty()) continue;
+            try {
+                long size = Long.parseLong(f[0]);
+                long mtime = Long.parseLong(f[1]);
+                long hash = Long.parseUnsignedLong(f[3]);
+                c.entries.compute(f[4], (k, e) -> {
+                    if (e == null || e.size != size || e.mtime != mtime) e = new Entry(size, mtime, new ConcurrentHashMap<>());
+                    e.hashes.put(f[2], hash);
+                    return e;
+                });
+            } catch (NumberFormatException ignore) {
+                // skip corrupt line
+            }
+        }
+        return c;
+    }
+
+    public Path file() { return file; }
+
+    public int hits() { return hits.get(); }
+
+    public int misses() { return misses.get(); }
+
+    /**
+     * @return cached hashes in {@code keys} order, or {@code null} unless every key is present
+     *         for exactly this size and mtime
+     */
+    public long[] lookup(String path, long size, long mtime, List<String> keys) {
+        path = normalize(path);
+        seen.add(path);
+        Entry e = entries.get(path);
+        if (e != null && e.size == size && e.mtime == mtime) {
+            long[] out = new long[keys.size()];
+            int i = 0;
+            for (String k : keys) {
+                Long h = e.hashes.get(k);
+                if (h == null) break;
+                out[i++] = h;
+            }
+            if (i == out.length) {
+                hits.incrementAndGet();
+                return out;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * A single value stored under {@code key} for exactly this size and mtime, or {@code null};
+     * for auxiliary per-file data, so it does not count as a hit or miss.
+     */
+    public Long get(String path, long size, long mtime, String key) {
+        path = normalize(path);
+        seen.add(path);
+        Entry e = entries.get(path);
+        return e != null && e.size == size && e.mtime == mtime ? e.hashes.get(key) : null;
+    }
+
+    public void put(String path, long size, long mtime, List<String> keys, long[] hashes) {
+        path = normalize(path);
+        seen.add(path);
+        Entry e = entries.compute(path, (k, old) ->
+                (old != null && old.size == size && old.mtime == mtime) ? old : new Entry(size, mtime, new ConcurrentHashMap<>()));
+        for (int i = 0; i < keys.size(); i++) e.hashes.put(keys.get(i), hashes[i]);
+    }
+
+    // Entries are keyed by absolute path, so relative and absolute scans of a tree share them
+    private static String normalize(String path) {
+        return Path.of(path).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Writes the cache atomically. Entries not seen since loading are kept only if they lie
+     * outside {@code scannedRoot} and the file still exists.
+     */
+    public void save(Path scannedRoot) throws IOException {
+        Path root = scannedRoot.toAbsolutePath().normalize();
+        List<String> lines = new ArrayList<>();
+        for (var en : entries.entrySet()) {
+            String path = en.getKey();
+            if (!seen.contains(path)) {
+                // Path-wise, so the sibling tree /photos2 is not under /photos
+                Path p = Path.of(path).toAbsolutePath().normalize();
+                if (p.startsWith(root) || !Files.exists(p)) continue;
+            }
+            Entry e = en.getValue();
+            for (var h : e.hashes.entrySet()) {
+                lines.add(e.size + "\t" + e.mtime + "\t" + h.getKey() + "\t" + Long.toUnsignedString(h.getValue()) + "\t" + path);
+            }
+        }
+        lines.sort(null);
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, ".idf-cache", ".tmp");
+        try {
+            Files.write(tmp, lines);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
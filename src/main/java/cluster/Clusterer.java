@@ -1,29 +1,123 @@
 package cluster;
+import hash.Hamming;
+import hash.WideHash;
 import index.Index;
+import index.WideIndex;
 import java.util.*;
+import java.util.function.Function;
 
 public final class Clusterer {
+    /**
+     * Connected components of the "within {@code radius}" graph.
+     *
+     * Items with the same hash are merged up front and the index is queried once per distinct
+     * hash, so a group of N identical images costs one query instead of N. Neighbours are
+     * merged with a union-find over int ids. Clusters come out in order of their first item,
+     * members in item order.
+     */
     public static List<Cluster> cluster(Map<String,Long> items, Index index, int radius) {
-        Set<String> visited = new HashSet<>();
-        List<Cluster> clusters = new ArrayList<>();
+        return cluster(items, h -> index.withinHamming(h, radius));
+    }
+
+    /** {@link #cluster(Map, Index, int)} for wide hashes. */
+    public static List<Cluster> cluster(Map<String, WideHash> items, WideIndex index, int radius) {
+        return cluster(items, h -> index.withinHamming(h, radius));
+    }
+
+    /**
+     * Like {@link #cluster(Map, Index, int)}, but each item carries its 8 dihedral variant
+     * hashes ({@link hash.Hasher#dihedral}) and is joined to everything within {@code radius}
+     * of any of them, so rotated and mirrored copies cluster with the original. The index
+     * holds the plain (first) hashes.
+     */
+    public static List<Cluster> clusterDihedral(Map<String, WideHash> variants, Index index, int radius) {
+        return cluster(variants, h -> index.withinHammingAny(h.words(), radius));
+    }
+
+    /** Clusters from {@link #cascade}, with the number of candidate pairs and how many passed verification. */
+    public record Cascade(List<Cluster> clusters, long candidateEdges, long verifiedEdges) {}
+
+    /**
+     * Two-stage clustering. Candidate pairs come from {@code index} over the cheap hashes in
+     * {@code items} at the generous {@code radius}. Each candidate pair is then kept only if
+     * its {@code verify} hashes (a stronger hash of the same files) are within
+     * {@code verifyRadius}, and only kept pairs are merged. This prevents a chain of loose
+     * matches from joining unrelated images. Files without a verification hash get no edges.
+     * As in {@link #cluster(Map, Index, int)}, the index is queried once per distinct cheap
+     * hash; every pair is counted and verified once.
+     */
+    public static Cascade cascade(Map<String, Long> items, Index index, int radius,
+                                  Map<String, Long> verify, int verifyRadius) {
+        int n = items.size();
+        String[] ids = new String[n];
+        long[] strong = new long[n];
+        boolean[] hasStrong = new boolean[n];
+        Map<String, Integer> idOf = new HashMap<>(n * 2);
+        Map<Long, List<Integer>> withHash = new LinkedHashMap<>();
+        int i = 0;
         for (var e : items.entrySet()) {
-            String id = e.getKey();
-            if (visited.contains(id)) continue;
-            List<String> members = new ArrayList<>();
-            Queue<String> q = new ArrayDeque<>();
-            q.add(id);
-            visited.add(id);
-            while (!q.isEmpty()) {
-                String cur = q.poll();
-                members.add(cur);
-                long h = items.get(cur);
-                for (String nb : index.withinHamming(h, radius)) {
-                    if (!visited.contains(nb)) {
-                        visited.add(nb);
-                        q.add(nb);
+            ids[i] = e.getKey();
+            idOf.put(e.getKey(), i);
+            Long h = verify.get(e.getKey());
+            hasStrong[i] = h != null;
+            if (h != null) strong[i] = h;
+            withHash.computeIfAbsent(e.getValue(), k -> new ArrayList<>()).add(i);
+            i++;
+        }
+
+        UnionFind uf = new UnionFind(n);
+        long candidates = 0, verified = 0;
+        for (var e : withHash.entrySet()) {
+            List<Integer> group = e.getValue();
+            for (String nb : index.withinHamming(e.getKey(), radius)) {
+                Integer j = idOf.get(nb);
+                if (j == null) continue;
+                for (int a : group) {
+                    if (a >= j) continue; // each unordered pair once, from its lower end
+                    candidates++;
+                    if (hasStrong[a] && hasStrong[j] && Hamming.distance(strong[a], strong[j]) <= verifyRadius) {
+                        verified++;
+                        uf.union(a, j);
                     }
                 }
             }
+        }
+        return new Cascade(components(ids, uf), candidates, verified);
+    }
+
+    private static <H> List<Cluster> cluster(Map<String, H> items, Function<H, List<String>> neighbours) {
+        int n = items.size();
+        String[] ids = new String[n];
+        Map<String, Integer> idOf = new HashMap<>(n * 2);
+        Map<H, Integer> firstWithHash = new LinkedHashMap<>();
+        UnionFind uf = new UnionFind(n);
+
+        int i = 0;
+        for (var e : items.entrySet()) {
+            ids[i] = e.getKey();
+            idOf.put(e.getKey(), i);
+            Integer rep = firstWithHash.putIfAbsent(e.getValue(), i);
+            if (rep != null) uf.union(rep, i);
+            i++;
+        }
+
+        for (var e : firstWithHash.entrySet()) {
+            int rep = e.getValue();
+            for (String nb : neighbours.apply(e.getKey())) {
+                Integer j = idOf.get(nb);
+                if (j != null) uf.union(rep, j);
+            }
+        }
+
+        return components(ids, uf);
+    }
+
+    private static List<Cluster> components(String[] ids, UnionFind uf) {
+        Map<Integer, List<String>> byRoot = new LinkedHashMap<>();
+        for (int k = 0; k < ids.length; k++) byRoot.computeIfAbsent(uf.find(k), r -> new ArrayList<>()).add(ids[k]);
+
+        List<Cluster> clusters = new ArrayList<>(byRoot.size());
+        for (List<String> members : byRoot.values()) {
             clusters.add(new Cluster(UUID.randomUUID().toString(), members));
         }
         return clusters;
@@ -0,0 +1,191 @@
+package core;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for concurrent decodes: a byte-weighted semaphore.
+ *
+ * Each decode acquires its estimated raster size before starting and releases it when the
+ * raster is no longer needed, so the decoded pixels in flight never exceed the budget no
+ * matter how many decode threads there are. A request larger than the budget currently
+ * available is clamped to it and therefore runs alone. The semaphore is fair, so a large
+ * request is not starved by a stream of small ones.
+ *
+ * When the JVM reports that a heap pool is still above {@link #PRESSURE_FRACTION} of its
+ * maximum after a collection ({@link MemoryNotificationInfo#MEMORY_COLLECTION_THRESHOLD_EXCEEDED}),
+ * half of the budget is withdrawn until collections bring usage back under the threshold.
+ * The JVM sends no notification for that, so it is checked whenever budget is released and
+ * by waiting requests every {@link #POLL_MILLIS} ms, which also re-clamps them if the budget
+ * shrank while they waited.
+ */
+public final class DecodeBudget implements AutoCloseable {
+
+    /** Heap occupancy after GC above which concurrency is reduced. */
+    public static final double PRESSURE_FRACTION = 0.75;
+
+    /** How often a waiting request re-checks memory pressure. */
+    public static final long POLL_MILLIS = 1000;
+
+    private static final long UNIT = 1024; // permits are KiB so budgets above 2 GiB fit an int
+
+    private static final class Permits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        Permits(int n) { super(n, true); }
+        void reduce(int n) { reducePermits(n); }
+    }
+
+    private final int capacity;
+    private final Permits permits;
+    private final long pollMillis;
+    private boolean pressured;
+
+    public DecodeBudget(long bytes) {
+        this(bytes, POLL_MILLIS);
+    }
+
+    DecodeBudget(long bytes, long pollMillis) {
+        this.pollMillis = pollMillis;
+        this.capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytes / UNIT));
+        this.permits = new Permits(capacity);
+        Monitor.register(this);
+    }
+
+    /** Default budget: a quarter of the maximum heap. */
+    public static long defaultBytes() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Blocks until {@code bytes} (clamped to the budget currently available) are available.
+     *
+     * @return the amount to hand back to {@link #release}
+     */
+    public long acquire(long bytes) throws InterruptedException {
+        while (true) {
+            int n = permits(bytes, available());
+            if (permits.tryAcquire(n, pollMillis, TimeUnit.MILLISECONDS)) return n;
+            relieveIfRecovered();
+        }
+    }
+
+    public void release(long granted) {
+        if (granted <= 0) return;
+        permits.release((int) granted);
+        relieveIfRecovered();
+    }
+
+    public synchronized boolean isPressured() {
+        return pressured;
+    }
+
+    /** Withdraws half of the budget; no-op if already under pressure. */
+    synchronized void pressure() {
+        if (pressured) return;
+        pressured = true;
+        permits.reduce(capacity / 2);
+    }
+
+    /** KiB permits for {@code bytes}, rounded up and clamped to {@code 1..limit} without overflowing. */
+    static int permits(long bytes, int limit) {
+        if (bytes >= (long) limit * UNIT) return limit;
+        return (int) Math.max(1, (bytes + UNIT - 1) / UNIT);
+    }
+
+    /** Permits that exist right now: the whole budget, or what {@link #pressure} left of it. */
+    private synchronized int available() {
+        return pressured ? capacity - capacity / 2 : capacity;
+    }
+
+    private void relieveIfRecovered() {
+        if (isPressured() && belowThreshold()) relieve();
+    }
+
+    synchronized void relieve() {
+        if (!pressured) return;
+        pressured = false;
+        permits.release(capacity / 2);
+    }
+
+    private static boolean belowThreshold() {
+        for (MemoryPoolMXBean p : Monitor.POOLS) {
+            // true while the usage after the latest collection is at or above the threshold
+            if (p.getCollectionUsageThreshold() > 0 && p.isCollectionUsageThresholdExceeded()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Monitor.unregister(this);
+    }
+
+    /**
+     * The collection-usage thresholds and notifications are JVM-wide, so they are shared by
+     * all open budgets: installed when the first one opens and restored when the last one
+     * closes. Thresholds someone else set are left alone.
+     */
+    private static final class Monitor {
+        static final List<MemoryPoolMXBean> POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP && p.isCollectionUsageThresholdSupported())
+                .toList();
+        private static final NotificationListener LISTENER = Monitor::onNotification;
+        private static final Set<DecodeBudget> OPEN = new HashSet<>();
+        private static final Map<MemoryPoolMXBean, Long> INSTALLED = new HashMap<>();
+
+        static synchronized void register(DecodeBudget budget) {
+            if (OPEN.isEmpty()) install();
+            OPEN.add(budget);
+        }
+
+        static synchronized void unregister(DecodeBudget budget) {
+            if (OPEN.remove(budget) && OPEN.isEmpty()) uninstall();
+        }
+
+        private static void install() {
+            for (MemoryPoolMXBean p : POOLS) {
+                long max = p.getUsage().getMax();
+                if (max <= 0 || p.getCollectionUsageThreshold() != 0) continue;
+                long threshold = (long) (max * PRESSURE_FRACTION);
+                p.setCollectionUsageThreshold(threshold);
+                INSTALLED.put(p, threshold);
+            }
+            if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter e) e.addNotificationListener(LISTENER, null, null);
+        }
+
+        private static void uninstall() {
+            try {
+                if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter e) e.removeNotificationListener(LISTENER);
+            } catch (ListenerNotFoundException ignore) {
+                // never registered
+            }
+            INSTALLED.forEach((p, threshold) -> {
+                if (p.getCollectionUsageThreshold() == threshold) p.setCollectionUsageThreshold(0);
+            });
+            INSTALLED.clear();
+        }
+
+        private static void onNotification(Notification n, Object handback) {
+            if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(n.getType())) return;
+            List<DecodeBudget> open;
+            synchronized (Monitor.class) {
+                open = List.copyOf(OPEN);
+            }
+            open.forEach(DecodeBudget::pressure);
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package core;
 
-import com.drew.imaging.ImageMetadataReader;
-import com.drew.metadata.Metadata;
-import com.drew.metadata.exif.ExifIFD0Directory;
-
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * Applies EXIF orientation (if present) to a BufferedImage.
@@ -37,27 +38,170 @@ public final class Exif {
         return transform(src, orientation);
     }
 
-    /** Read EXIF orientation (1..8). Returns 1 if missing/unknown. */
-//    public static int readOrientationSafe(Path imagePath) {
-//        if (imagePath == null || !Files.isRegularFile(imagePath)) return 1;
-//        try {
-//            Metadata md = ImageMetadataReader.readMetadata(imagePath.toFile());
-//            ExifIFD0Directory dir = md.getFirstDirectoryOfType(ExifIFD0Directory.class);
-//            if (dir != null && dir.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
-//                Integer v = dir.getInteger(ExifIFD0Directory.TAG_ORIENTATION);
-//                if (v != null && v >= 1 && v <= 8) return v;
-//            }
-//        } catch (Exception ignore) {
-//            // Non-fatal: Log to standard error and treat as no-orientation
-//            System.err.println("Warning: Failed to read EXIF orientation for " + imagePath + ". Reason: " + ignore.getMessage());
-//        }
-//        return 1;
-//    }
+    /** Bytes of the APP1 segment read before parsing; enough for IFD0 of any camera file seen so far. */
+    private static final int HEAD = 4096;
+    private static final int TAG_ORIENTATION = 0x0112;
 
+    /**
+     * Read EXIF orientation (1..8). Returns 1 if missing/unknown.
+     *
+     * Only the container structure is walked: JPEG markers up to the first APP1 "Exif"
+     * segment, or PNG chunks up to eXIf, then IFD0 of the TIFF header. A typical file
+     * costs a handful of positional reads totalling a few KB.
+     */
     public static int readOrientationSafe(Path path) {
+        if (path == null || !Files.isRegularFile(path)) return 1;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return orientation((pos, n) -> {
+                ByteBuffer buf = ByteBuffer.allocate((int) Math.max(0, Math.min(n, ch.size() - pos)));
+                while (buf.hasRemaining() && ch.read(buf, pos + buf.position()) > 0) { }
+                return Arrays.copyOf(buf.array(), buf.position());
+            });
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to read EXIF orientation for " + path + ". Reason: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /** {@link #readOrientationSafe(Path)} for file contents already in memory. */
+    public static int readOrientation(byte[] data) {
+        try {
+            return orientation(source(data));
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    /** Positional reads; may return fewer bytes than asked for at the end of the file. */
+    private interface Source {
+        byte[] read(long pos, int n) throws IOException;
+    }
+
+    private static Source source(byte[] data) {
+        return (pos, n) -> pos >= data.length ? new byte[0]
+                : Arrays.copyOfRange(data, (int) pos, (int) Math.min(data.length, pos + n));
+    }
+
+    private static int orientation(Source src) throws IOException {
+        byte[] sig = src.read(0, 8);
+        if (sig.length >= 2 && (sig[0] & 0xff) == 0xFF && (sig[1] & 0xff) == 0xD8) return jpegOrientation(src);
+        if (sig.length == 8 && (sig[0] & 0xff) == 0x89 && sig[1] == 'P' && sig[2] == 'N' && sig[3] == 'G') return pngOrientation(src);
         return 1;
     }
 
+    private static int jpegOrientation(Source src) throws IOException {
+        long[] app1 = exifSegment(src);
+        if (app1 == null) return 1;
+        byte[] seg = src.read(app1[0], (int) Math.min(app1[1], HEAD));
+        int o = tiffOrientation(seg, 6);
+        if (o < 0 && seg.length < app1[1]) o = tiffOrientation(src.read(app1[0], (int) app1[1]), 6);
+        return o < 0 ? 1 : o;
+    }
+
+    /** Position and length of the first APP1 "Exif" segment's payload, or {@code null}. */
+    private static long[] exifSegment(Source src) throws IOException {
+        long pos = 2;
+        while (true) {
+            byte[] h = src.read(pos, 10);
+            if (h.length < 4 || (h[0] & 0xff) != 0xFF) return null;
+            int marker = h[1] & 0xff;
+            if (marker == 0xFF) { pos++; continue; }                     // fill byte
+            // EXIF must precede the frame; stop at SOFn, SOS or EOI
+            if (marker == 0xDA || marker == 0xD9 || (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC)) return null;
+            int len = ((h[2] & 0xff) << 8) | (h[3] & 0xff);
+            if (len < 2) return null;
+            if (marker == 0xE1 && len >= 8 && h.length == 10
+                    && h[4] == 'E' && h[5] == 'x' && h[6] == 'i' && h[7] == 'f' && h[8] == 0 && h[9] == 0) {
+                return new long[]{pos + 4, len - 2};
+            }
+            pos += 2 + len;
+        }
+    }
+
+    /**
+     * The JPEG thumbnail embedded in IFD1 of a JPEG's EXIF segment (tags 513/514), or
+     * {@code null} if there is none. Only the segment is parsed; the thumbnail is not decoded.
+     */
+    public static byte[] thumbnail(byte[] data) {
+        try {
+            Source src = source(data);
+            if (data.length < 4 || (data[0] & 0xff) != 0xFF || (data[1] & 0xff) != 0xD8) return null;
+            long[] app1 = exifSegment(src);
+            if (app1 == null) return null;
+            int base = (int) app1[0] + 6, end = (int) (app1[0] + app1[1]);
+            if (end > data.length) return null;
+            boolean le = data[base] == 'I';
+            if (!le && data[base] != 'M') return null;
+            int ifd0 = base + (int) u32(data, base + 4, le);
+            int ifd1 = base + (int) u32(data, ifd0 + 2 + 12 * u16(data, ifd0, le), le);
+            if (ifd1 == base || ifd1 + 2 > end) return null;
+            long off = -1, len = -1;
+            for (int i = 0, n = u16(data, ifd1, le); i < n; i++) {
+                int e = ifd1 + 2 + 12 * i;
+                int tag = u16(data, e, le);
+                long v = u16(data, e + 2, le) == 3 ? u16(data, e + 8, le) : u32(data, e + 8, le);
+                if (tag == 0x0201) off = v;
+                else if (tag == 0x0202) len = v;
+            }
+            if (off <= 0 || len <= 4 || base + off + len > end) return null;
+            byte[] thumb = Arrays.copyOfRange(data, (int) (base + off), (int) (base + off + len));
+            return (thumb[0] & 0xff) == 0xFF && (thumb[1] & 0xff) == 0xD8 ? thumb : null;
+        } catch (IOException | RuntimeException e) {
+            return null; // truncated or inconsistent IFDs
+        }
+    }
+
+    private static int pngOrientation(Source src) throws IOException {
+        long pos = 8;
+        while (true) {
+            byte[] h = src.read(pos, 8);
+            if (h.length < 8) return 1;
+            long len = ((h[0] & 0xffL) << 24) | ((h[1] & 0xff) << 16) | ((h[2] & 0xff) << 8) | (h[3] & 0xff);
+            String type = new String(h, 4, 4, java.nio.charset.StandardCharsets.ISO_8859_1);
+            if (type.equals("IDAT") || type.equals("IEND")) return 1;
+            if (type.equals("eXIf")) {
+                int o = tiffOrientation(src.read(pos + 8, (int) Math.min(len, 1 << 20)), 0);
+                return o < 0 ? 1 : o;
+            }
+            pos += 12 + len;
+        }
+    }
+
+    /**
+     * Orientation from the IFD0 of a TIFF structure starting at {@code base}: 1..8, 1 if the tag
+     * is absent or invalid, -1 if IFD0 extends beyond {@code b}.
+     */
+    private static int tiffOrientation(byte[] b, int base) {
+        if (b.length < base + 8) return -1;
+        boolean le;
+        if (b[base] == 'I' && b[base + 1] == 'I') le = true;
+        else if (b[base] == 'M' && b[base + 1] == 'M') le = false;
+        else return 1;
+        if (u16(b, base + 2, le) != 42) return 1;
+        long ifd = u32(b, base + 4, le);
+        if (ifd < 8) return 1;
+        int p = (int) Math.min(Integer.MAX_VALUE - 16, base + ifd);
+        if (p + 2 > b.length) return -1;
+        int n = u16(b, p, le);
+        for (int i = 0; i < n; i++) {
+            int e = p + 2 + 12 * i;
+            if (e + 12 > b.length) return -1;
+            if (u16(b, e, le) != TAG_ORIENTATION) continue;
+            int type = u16(b, e + 2, le);
+            int v = type == 3 ? u16(b, e + 8, le) : type == 4 ? (int) u32(b, e + 8, le) : 1; // SHORT or LONG
+            return v >= 1 && v <= 8 ? v : 1;
+        }
+        return 1;
+    }
+
+    private static int u16(byte[] b, int p, boolean le) {
+        return le ? (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8) : ((b[p] & 0xff) << 8) | (b[p + 1] & 0xff);
+    }
+
+    private static long u32(byte[] b, int p, boolean le) {
+        return le ? (u16(b, p, true) | ((long) u16(b, p + 2, true) << 16)) : (((long) u16(b, p, false) << 16) | u16(b, p + 2, false));
+    }
+
     /** Apply EXIF orientation (1..8). Unknown values are treated as 1. */
     public static BufferedImage transform(BufferedImage src, int orientation) {
         if (src == null) return null;
@@ -145,7 +289,8 @@ public final class Exif {
     }
 
     private static BufferedImage ensureTransformable(BufferedImage src) {
-        if (src == null || src.getType() != BufferedImage.TYPE_CUSTOM) {
+        // AffineTransformOp needs matching colour models; JPEG decodes are usually 3BYTE_BGR or gray
+        if (src == null || src.getType() == chooseType(src)) {
             return src;
         }
         BufferedImage copy = new BufferedImage(src.getWidth(), src.getHeight(), chooseType(src));
@@ -158,10 +303,3 @@ public final class Exif {
         return copy;
     }
 }
-
-//TODO: test this functionality
-// Tests I should write:
-// No EXIF → image unchanged.
-// Each orientation 1..8 → pixel coordinates map correctly (use tiny fixtures: arrows or “L” shapes).
-// Alpha preservation: input with transparency → output still has alpha.
-// Non-JPEG / corrupted EXIF → no exceptions, orientation=1.
@@ -1,13 +1,150 @@
 package core;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public final class ImageLoader {
+
+    /**
+     * Smallest side a hashing decode keeps: 8x the 32-pixel hash grid, so the area filter
+     * still averages many source pixels per cell.
+     */
+    public static final int HASH_MIN_SIDE = 256;
+
+    /** Smallest side of an embedded EXIF thumbnail worth hashing: 2x the 32-pixel hash grid. */
+    public static final int THUMBNAIL_MIN_SIDE = 64;
+
+    /** Most bytes of idle decode rasters kept for reuse ({@link #recycle}). */
+    public static final long RASTER_POOL_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8);
+
+    private static final RasterPool POOL = new RasterPool(RASTER_POOL_BYTES);
+
+    /** Bumped when the hashing decode path changes its output (part of the hash cache key). */
+    public static final int HASH_DECODE_REVISION = 5;
+
     public static BufferedImage load(Path path) throws Exception {
-        var img = ImageIO.read(path.toFile());
+        if (!Files.isReadable(path)) throw new javax.imageio.IIOException("Can't read input file!");
+        BufferedImage img;
+        try (ImageInputStream in = MappedImageInputStream.open(path)) {
+            img = read(in);
+        }
         if (img == null) throw new IllegalArgumentException("Unsupported format: " + path);
         return core.Exif.applyOrientation(img, path);
     }
-}
 
+    /** Decodes file contents that were already read into memory; {@code path} is only used in messages. */
+    public static BufferedImage load(byte[] data, Path path) throws Exception {
+        var img = read(MappedImageInputStream.of(data));
+        if (img == null) throw new IllegalArgumentException("Unsupported format: " + path);
+        return core.Exif.transform(img, core.Exif.readOrientation(data));
+    }
+
+    /**
+     * Decode for hashing: reads the dimensions from the header, then lets the reader skip
+     * source pixels ({@link ImageReadParam#setSourceSubsampling}) so the decoded image keeps
+     * at least {@code minSide} pixels on its shorter side, and further as far as needed for it
+     * to have at most {@code maxPixels} pixels, so oversized images (extreme panoramas) are
+     * still hashed rather than skipped. The full-resolution raster is never allocated.
+     *
+     * EXIF orientation is not applied; callers apply it to the downscaled luma instead
+     * ({@link LumaGrid#orient}). The result may be a view of a pooled raster; pass it to
+     * {@link #recycle} once done with it. {@code path} is only used in messages.
+     */
+    public static BufferedImage decodeForHash(byte[] data, Path path, int minSide, long maxPixels) throws Exception {
+        try (ImageInputStream in = MappedImageInputStream.of(data)) {
+            return readSubsampled(in, minSide, maxPixels, path);
+        }
+    }
+
+    /**
+     * {@link #decodeForHash(byte[], Path, int, long)} straight from the file, through a memory
+     * mapping ({@link MappedImageInputStream#open}) instead of a copy in the heap.
+     */
+    public static BufferedImage decodeForHash(Path path, int minSide, long maxPixels) throws Exception {
+        if (!Files.isReadable(path)) throw new javax.imageio.IIOException("Can't read input file!");
+        try (ImageInputStream in = MappedImageInputStream.open(path)) {
+            return readSubsampled(in, minSide, maxPixels, path);
+        }
+    }
+
+    /**
+     * Decodes the JPEG thumbnail embedded in EXIF IFD1 ({@link Exif#thumbnail}) for hashing,
+     * unoriented like {@link #decodeForHash}. Returns {@code null} when there is none, when it
+     * is smaller than {@link #THUMBNAIL_MIN_SIDE}, or when its aspect ratio differs from the
+     * main image's by more than 2% (letterboxed or stale thumbnails), so callers fall back to
+     * the main image.
+     */
+    public static BufferedImage decodeThumbnailForHash(byte[] data) {
+        byte[] thumb = Exif.thumbnail(data);
+        if (thumb == null) return null;
+        ImageProbe.Info main = ImageProbe.probe(data), small = ImageProbe.probe(thumb);
+        if (main == null || small == null || Math.min(small.width(), small.height()) < THUMBNAIL_MIN_SIDE) return null;
+        double aspect = main.width() / (double) main.height();
+        if (Math.abs(small.width() / (double) small.height() - aspect) > 0.02 * aspect) return null;
+        try {
+            return read(MappedImageInputStream.of(thumb));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Source stride that keeps at least {@code minSide} pixels on the shorter side (1 = no subsampling). */
+    public static int subsampling(int width, int height, int minSide) {
+        return Math.max(1, Math.min(width, height) / Math.max(1, minSide));
+    }
+
+    /** {@link #subsampling(int, int, int)}, increased until the decoded image has at most {@code maxPixels} pixels. */
+    public static int subsampling(int width, int height, int minSide, long maxPixels) {
+        int s = subsampling(width, height, minSide);
+        long limit = Math.max(1, maxPixels);
+        if (decodedPixels(width, height, s) > limit) s = Math.max(s, (int) Math.sqrt((double) width * height / limit));
+        while (decodedPixels(width, height, s) > limit) s++;
+        return s;
+    }
+
+    /** Pixels of a {@code width x height} image decoded with source stride {@code s}. */
+    public static long decodedPixels(int width, int height, int s) {
+        return (long) ((width + s - 1) / s) * ((height + s - 1) / s);
+    }
+
+    /**
+     * Hands a {@link #decodeForHash} result back for reuse by later decodes. The image must
+     * not be used afterwards; images from other sources are ignored.
+     */
+    public static void recycle(BufferedImage img) {
+        POOL.release(img);
+    }
+
+    /** Full decode with a pooled reader; {@code null} if no reader accepts the input. */
+    private static BufferedImage read(ImageInputStream in) throws IOException {
+        return ImageReaders.with(in, r -> r.read(0, r.getDefaultReadParam()));
+    }
+
+    private static BufferedImage readSubsampled(ImageInputStream in, int minSide, long maxPixels, Path path) throws Exception {
+        BufferedImage img = ImageReaders.with(in, reader -> {
+            int w = reader.getWidth(0), h = reader.getHeight(0);
+            int s = subsampling(w, h, minSide, maxPixels);
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (s > 1) param.setSourceSubsampling(s, s, 0, 0);
+            // Decode into a pooled raster when the reader's default layout is a standard type
+            var types = reader.getImageTypes(0);
+            int type = types.hasNext() ? types.next().getBufferedImageType() : BufferedImage.TYPE_CUSTOM;
+            if (!RasterPool.poolable(type)) return reader.read(0, param);
+            int dw = (w + s - 1) / s, dh = (h + s - 1) / s;
+            BufferedImage dest = POOL.acquire(type, dw, dh);
+            param.setDestination(dest);
+            try {
+                return reader.read(0, param).getSubimage(0, 0, dw, dh);
+            } catch (IOException | RuntimeException e) {
+                POOL.release(dest);
+                throw e;
+            }
+        });
+        if (img == null) throw new IllegalArgumentException("Unsupported format: " + path);
+        return img;
+    }
+}
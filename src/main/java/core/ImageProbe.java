@@ -0,0 +1,157 @@
+package core;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads image dimensions from container headers without decoding pixels.
+ *
+ * JPEG (first SOFn segment), PNG (IHDR) and BMP (DIB header) are parsed directly with a
+ * few positional reads, typically touching only the first few KB. Anything else goes
+ * through an {@link ImageReader}'s {@code getWidth/getHeight} without {@code read()}, and a
+ * full decode is the last resort.
+ */
+public final class ImageProbe {
+
+    /** Stored (pre-EXIF) dimensions and the detected container. */
+    public record Info(String format, int width, int height) {
+        public long pixels() { return (long) width * height; }
+    }
+
+    private ImageProbe() {}
+
+    public static Info probe(Path path) throws IOException {
+        Info info = null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            info = headers((pos, n) -> read(ch, pos, n), ch.size());
+        }
+        if (info == null) info = viaReader(path);
+        if (info == null) info = viaDecode(path);
+        if (info == null) throw new IOException("Unsupported or unreadable image: " + path);
+        return info;
+    }
+
+    /**
+     * {@link #probe(Path)} without the last resort of decoding the image: header parsing, then
+     * the ImageIO reader's header; {@code null} if neither gives the dimensions.
+     */
+    public static Info probeHeader(Path path) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            Info info = headers((pos, n) -> read(ch, pos, n), ch.size());
+            if (info != null) return info;
+        } catch (IOException e) {
+            return null;
+        }
+        return viaReader(path);
+    }
+
+    /**
+     * {@link #probe(Path)} for file contents already in memory: header parsing only, so
+     * {@code null} for formats other than JPEG, PNG and BMP.
+     */
+    public static Info probe(byte[] data) {
+        try {
+            return headers((pos, n) -> ByteBuffer.wrap(data, (int) Math.min(pos, data.length),
+                    (int) Math.max(0, Math.min(n, data.length - pos))).slice(), data.length);
+        } catch (IOException e) {
+            return null; // not thrown for arrays
+        }
+    }
+
+    /** Positional reads; the returned buffer may be short at the end of the data. */
+    private interface Source {
+        ByteBuffer read(long pos, int n) throws IOException;
+    }
+
+    private static Info headers(Source src, long size) throws IOException {
+        ByteBuffer head = src.read(0, 32);
+        if (head.remaining() < 4) return null;
+        int b0 = head.get(0) & 0xff, b1 = head.get(1) & 0xff;
+        if (b0 == 0xFF && b1 == 0xD8) return jpeg(src, size);
+        if (b0 == 0x89 && b1 == 'P' && head.get(2) == 'N' && head.get(3) == 'G') return png(head);
+        if (b0 == 'B' && b1 == 'M') return bmp(head);
+        return null;
+    }
+
+    private static Info jpeg(Source src, long size) throws IOException {
+        long pos = 2;
+        while (pos + 4 <= size) {
+            ByteBuffer seg = src.read(pos, 9);
+            if (seg.remaining() < 4 || (seg.get(0) & 0xff) != 0xFF) return null;
+            int marker = seg.get(1) & 0xff;
+            if (marker == 0xFF) { pos++; continue; }                       // fill byte
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) { pos += 2; continue; } // no length
+            if (marker == 0xDA || marker == 0xD9) return null;             // SOS/EOI before any SOF
+            int len = seg.getShort(2) & 0xffff;
+            boolean sof = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (sof) {
+                if (seg.remaining() < 9) return null;
+                int h = seg.getShort(5) & 0xffff, w = seg.getShort(7) & 0xffff;
+                return (w > 0 && h > 0) ? new Info("jpeg", w, h) : null; // h == 0: defined by DNL, rare
+            }
+            if (len < 2) return null;
+            pos += 2 + len;
+        }
+        return null;
+    }
+
+    private static Info png(ByteBuffer head) {
+        // signature (8) + IHDR length (4) + "IHDR" (4) + width (4) + height (4)
+        if (head.remaining() < 24 || head.get(12) != 'I' || head.get(13) != 'H' || head.get(14) != 'D' || head.get(15) != 'R')
+            return null;
+        int w = head.getInt(16), h = head.getInt(20);
+        return (w > 0 && h > 0) ? new Info("png", w, h) : null;
+    }
+
+    private static Info bmp(ByteBuffer head) {
+        if (head.remaining() < 26) return null;
+        head.order(ByteOrder.LITTLE_ENDIAN);
+        int dib = head.getInt(14);
+        int w, h;
+        if (dib == 12) {                       // OS/2 BITMAPCOREHEADER
+            w = head.getShort(18) & 0xffff;
+            h = head.getShort(20) & 0xffff;
+        } else if (dib >= 40) {                // BITMAPINFOHEADER and later
+            w = head.getInt(18);
+            h = Math.abs(head.getInt(22));     // negative height = top-down rows
+        } else {
+            return null;
+        }
+        return (w > 0 && h > 0) ? new Info("bmp", w, h) : null;
+    }
+
+    private static Info viaReader(Path path) {
+        try (var in = MappedImageInputStream.open(path)) {
+            return ImageReaders.with(in, r -> new Info(r.getFormatName().toLowerCase(), r.getWidth(0), r.getHeight(0)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Info viaDecode(Path path) {
+        try {
+            BufferedImage img;
+            try (var in = MappedImageInputStream.open(path)) {
+                img = ImageIO.read(in);
+            }
+            return img == null ? null : new Info("unknown", img.getWidth(), img.getHeight());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel ch, long pos, int n) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(n);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) break;
+        }
+        return buf.flip();
+    }
+}
@@ -0,0 +1,90 @@
+package core;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-thread {@link ImageReader}s, reused across files.
+ *
+ * {@code ImageIO.read} asks the service registry for a reader on every call (probing each
+ * provider's {@code canDecodeInput}) and throws the reader away afterwards. Here the
+ * format is recognised from its magic bytes and each thread keeps one reader per format,
+ * attached with {@code setInput(in, true, true)} so metadata is skipped. A reader that
+ * throws is disposed and replaced, since its internal state is unknown afterwards. Formats
+ * without a known signature still go through the registry.
+ */
+final class ImageReaders {
+
+    interface ReaderFunction<T> {
+        T apply(ImageReader reader) throws IOException;
+    }
+
+    private static final ThreadLocal<Map<String, ImageReader>> READERS = ThreadLocal.withInitial(HashMap::new);
+
+    private ImageReaders() {}
+
+    /**
+     * Runs {@code fn} with a reader attached to {@code in} (positioned at the start of the image).
+     *
+     * @return the result of {@code fn}, or {@code null} if no installed reader accepts the input
+     */
+    static <T> T with(ImageInputStream in, ReaderFunction<T> fn) throws IOException {
+        String format = sniff(in);
+        ImageReader reader = format == null ? null : READERS.get().computeIfAbsent(format, ImageReaders::create);
+        if (reader == null) return viaRegistry(in, fn);
+        boolean ok = false;
+        try {
+            reader.setInput(in, true, true);
+            T result = fn.apply(reader);
+            ok = true;
+            return result;
+        } finally {
+            if (ok) {
+                reader.reset();
+            } else {
+                READERS.get().remove(format);
+                reader.dispose();
+            }
+        }
+    }
+
+    private static <T> T viaRegistry(ImageInputStream in, ReaderFunction<T> fn) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) return null;
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(in, true, true);
+            return fn.apply(reader);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static ImageReader create(String format) {
+        Iterator<ImageReader> it = ImageIO.getImageReadersByFormatName(format);
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /** Format name from the first bytes, or {@code null}; the stream position is unchanged. */
+    static String sniff(ImageInputStream in) throws IOException {
+        byte[] b = new byte[4];
+        in.mark();
+        int n;
+        try {
+            n = in.read(b);
+        } finally {
+            in.reset();
+        }
+        if (n < 4) return null;
+        if ((b[0] & 0xff) == 0xFF && (b[1] & 0xff) == 0xD8 && (b[2] & 0xff) == 0xFF) return "jpeg";
+        if ((b[0] & 0xff) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') return "png";
+        if (b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') return "gif";
+        if (b[0] == 'B' && b[1] == 'M') return "bmp";
+        return null;
+    }
+}
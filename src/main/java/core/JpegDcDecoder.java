@@ -0,0 +1,459 @@
+package core;
+
+/**
+ * Reduced-resolution JPEG luma from DC coefficients only.
+ *
+ * The DC coefficient of each 8x8 block is eight times the block's mean sample, so the DC
+ * values of the luma component already form a 1/8-scale luma image. This decoder
+ * entropy-decodes just far enough to get them: for baseline/extended sequential files it
+ * walks the Huffman codes of the luma scan (AC codes are decoded only to skip them), for
+ * progressive files it reads the DC-first scan and any DC refinement scans and skips all
+ * AC scans by searching for the next marker. There is no IDCT, no colour conversion and
+ * no full-size raster.
+ *
+ * Supported: 8-bit Huffman-coded SOF0/SOF1/SOF2 with 1 (gray) or 3 (YCbCr) components,
+ * any sampling factors, restart intervals. Anything else (arithmetic coding, lossless,
+ * hierarchical, 12-bit, CMYK/YCCK, Adobe RGB) returns {@code null} so the caller can fall
+ * back to {@link ImageLoader}. Corrupt data also returns {@code null}.
+ */
+public final class JpegDcDecoder {
+
+    /** The luma component's DC plane: one 0..255 value per 8x8 block. */
+    public record DcPlane(int width, int height, int blocksX, int blocksY, int[] luma) {}
+
+    private static final int LOOKAHEAD = 9;
+
+    private final byte[] data;
+    private int pos;
+
+    // frame
+    private int width, height, hMax, vMax;
+    private int[] compId, compH, compV, compQ;
+    private boolean progressive;
+    private final int[][] quant = new int[4][];
+    private final Huffman[] dcTables = new Huffman[4];
+    private final Huffman[] acTables = new Huffman[4];
+    private int restartInterval;
+    private boolean adobeRgb;
+
+    // output: DC values of component 0 in its MCU-padded block grid
+    private int[] dc;
+    private int dcStride;
+    private boolean haveDc;
+
+    private JpegDcDecoder(byte[] data) {
+        this.data = data;
+    }
+
+    public static boolean isJpeg(byte[] data) {
+        return data.length > 3 && (data[0] & 0xff) == 0xFF && (data[1] & 0xff) == 0xD8 && (data[2] & 0xff) == 0xFF;
+    }
+
+    /** Decodes the DC plane, or returns {@code null} if the file is unsupported or corrupt. */
+    public static DcPlane decode(byte[] data) {
+        if (!isJpeg(data)) return null;
+        try {
+            return new JpegDcDecoder(data).run();
+        } catch (RuntimeException e) {
+            return null; // malformed stream: let the full decoder have a go
+        }
+    }
+
+    /**
+     * Luma grid straight from the DC plane, or {@code null} if unsupported or if the plane has
+     * fewer than {@code minBlocks} blocks on its shorter side (too coarse for the grid).
+     */
+    public static LumaGrid lumaGrid(byte[] data, int w, int h, int minBlocks) {
+        DcPlane p = decode(data);
+        if (p == null || Math.min(p.blocksX, p.blocksY) < minBlocks) return null;
+        Luma.Accumulator acc = new Luma.Accumulator(p.blocksX, p.blocksY, w, h);
+        for (int y = 0; y < p.blocksY; y++) acc.addRow(p.luma, y * p.blocksX);
+        int[] out = new int[w * h];
+        acc.finish(out);
+        return new LumaGrid(w, h, out);
+    }
+
+    private DcPlane run() {
+        pos = 2;
+        while (true) {
+            int marker = nextMarker();
+            if (marker < 0 || marker == 0xD9) break;                 // EOF / EOI
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) continue;
+            int len = u16(pos);
+            int seg = pos + 2, end = pos + len;
+            if (len < 2 || end > data.length) return null;
+            switch (marker) {
+                case 0xC0, 0xC1, 0xC2 -> {
+                    if (!frame(seg, marker == 0xC2)) return null;
+                }
+                case 0xC3, 0xC5, 0xC6, 0xC7, 0xC9, 0xCA, 0xCB, 0xCD, 0xCE, 0xCF -> {
+                    return null; // lossless, hierarchical or arithmetic coded
+                }
+                case 0xC4 -> huffman(seg, end);
+                case 0xDB -> quantization(seg, end);
+                case 0xDD -> restartInterval = u16(seg);
+                case 0xEE -> adobe(seg, end);
+                case 0xDA -> {
+                    if (compId == null) return null;
+                    pos = end;
+                    if (scan(seg)) {
+                        if (!progressive) return plane();
+                    } else {
+                        skipEntropyData();
+                    }
+                    continue;
+                }
+                default -> { }
+            }
+            pos = end;
+        }
+        return haveDc ? plane() : null;
+    }
+
+    // Returns the marker code after 0xFF (pos then points at the segment length), or -1
+    private int nextMarker() {
+        while (pos + 1 < data.length) {
+            if ((data[pos] & 0xff) != 0xFF) { pos++; continue; }
+            int m = data[pos + 1] & 0xff;
+            if (m == 0xFF) { pos++; continue; }
+            pos += 2;
+            if (m != 0) return m;
+        }
+        return -1;
+    }
+
+    private boolean frame(int p, boolean progressive) {
+        if ((data[p] & 0xff) != 8) return false;                       // 12-bit
+        height = u16(p + 1);
+        width = u16(p + 3);
+        int n = data[p + 5] & 0xff;
+        if (width == 0 || height == 0 || (n != 1 && n != 3)) return false; // DNL height, CMYK/YCCK
+        this.progressive = progressive;
+        compId = new int[n];
+        compH = new int[n];
+        compV = new int[n];
+        compQ = new int[n];
+        for (int i = 0; i < n; i++) {
+            int q = p + 6 + 3 * i;
+            compId[i] = data[q] & 0xff;
+            compH[i] = (data[q + 1] >> 4) & 0x0f;
+            compV[i] = data[q + 1] & 0x0f;
+            compQ[i] = data[q + 2] & 0x03;
+            if (compH[i] < 1 || compH[i] > 4 || compV[i] < 1 || compV[i] > 4) return false;
+            hMax = Math.max(hMax, compH[i]);
+            vMax = Math.max(vMax, compV[i]);
+        }
+        // Component ids 'R','G','B' or an Adobe transform of 0 mean RGB samples, not YCbCr
+        if (n == 3 && (adobeRgb || (compId[0] == 'R' && compId[1] == 'G' && compId[2] == 'B'))) return false;
+        int mcusX = ceilDiv(width, 8 * hMax), mcusY = ceilDiv(height, 8 * vMax);
+        dcStride = mcusX * compH[0];
+        dc = new int[dcStride * mcusY * compV[0]];
+        return true;
+    }
+
+    private void adobe(int p, int end) {
+        // "Adobe" + version(2) + flags0(2) + flags1(2) + transform(1)
+        if (end - p >= 12 && data[p] == 'A' && data[p + 1] == 'd' && data[p + 2] == 'o' && data[p + 3] == 'b' && data[p + 4] == 'e') {
+            adobeRgb = data[p + 11] == 0;
+        }
+    }
+
+    private void quantization(int p, int end) {
+        while (p < end) {
+            int pq = (data[p] >> 4) & 0x0f, tq = data[p] & 0x03;
+            int[] q = new int[64];
+            p++;
+            for (int k = 0; k < 64; k++) {
+                q[k] = pq == 0 ? data[p] & 0xff : u16(p);
+                p += pq == 0 ? 1 : 2;
+            }
+            quant[tq] = q;
+        }
+    }
+
+    private void huffman(int p, int end) {
+        while (p < end) {
+            int tc = (data[p] >> 4) & 0x0f, th = data[p] & 0x03;
+            int[] counts = new int[17];
+            int total = 0;
+            for (int l = 1; l <= 16; l++) total += counts[l] = data[p + l] & 0xff;
+            int[] symbols = new int[total];
+            for (int i = 0; i < total; i++) symbols[i] = data[p + 17 + i] & 0xff;
+            (tc == 0 ? dcTables : acTables)[th] = new Huffman(counts, symbols);
+            p += 17 + total;
+        }
+    }
+
+    /**
+     * Decodes one scan if it carries DC information for component 0.
+     * @return false if the scan is of no use (and its data must be skipped)
+     */
+    private boolean scan(int p) {
+        int ns = data[p] & 0xff;
+        int[] comps = new int[ns], td = new int[ns], ta = new int[ns];
+        boolean hasLuma = false;
+        for (int i = 0; i < ns; i++) {
+            int id = data[p + 1 + 2 * i] & 0xff;
+            comps[i] = indexOf(id);
+            if (comps[i] < 0) throw new IllegalStateException("Unknown component " + id);
+            td[i] = (data[p + 2 + 2 * i] >> 4) & 0x0f;
+            ta[i] = data[p + 2 + 2 * i] & 0x0f;
+            hasLuma |= comps[i] == 0;
+        }
+        int q = p + 1 + 2 * ns;
+        int ss = data[q] & 0xff, ah = (data[q + 2] >> 4) & 0x0f, al = data[q + 2] & 0x0f;
+        if (!hasLuma) return false;
+        if (progressive && ss != 0) return false;                     // AC scan: not needed
+        if (progressive && ah != 0 && !haveDc) return false;
+
+        BitReader in = new BitReader(data, pos);
+        int[] pred = new int[ns];
+        boolean refine = progressive && ah != 0;
+        boolean dcOnly = progressive;
+
+        int mcusX, mcusY;
+        if (ns == 1) {
+            // Non-interleaved: the component's own block grid, no MCU padding
+            int c = comps[0];
+            mcusX = ceilDiv(ceilDiv(width * compH[c], hMax), 8);
+            mcusY = ceilDiv(ceilDiv(height * compV[c], vMax), 8);
+        } else {
+            mcusX = ceilDiv(width, 8 * hMax);
+            mcusY = ceilDiv(height, 8 * vMax);
+        }
+
+        int mcu = 0;
+        for (int my = 0; my < mcusY; my++) {
+            for (int mx = 0; mx < mcusX; mx++) {
+                if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                    in.restart();
+                    java.util.Arrays.fill(pred, 0);
+                }
+                for (int i = 0; i < ns; i++) {
+                    int c = comps[i];
+                    int bh = ns == 1 ? 1 : compH[c], bv = ns == 1 ? 1 : compV[c];
+                    for (int v = 0; v < bv; v++) {
+                        for (int h = 0; h < bh; h++) {
+                            int value;
+                            if (refine) {
+                                value = in.bit();
+                            } else {
+                                int s = dcTable(td[i]).decode(in);
+                                pred[i] += in.receiveExtend(s);
+                                value = pred[i];
+                            }
+                            if (!dcOnly) skipAc(in, acTable(ta[i]));
+                            if (c == 0) {
+                                int bx = ns == 1 ? mx : mx * compH[0] + h;
+                                int by = ns == 1 ? my : my * compV[0] + v;
+                                int idx = by * dcStride + bx;
+                                if (refine) { if (value != 0) dc[idx] |= 1 << al; }
+                                else dc[idx] = value << al;
+                            }
+                        }
+                    }
+                }
+                mcu++;
+            }
+        }
+        if (in.overrun() > 8) throw new IllegalStateException("Truncated entropy data");
+        pos = in.position();
+        haveDc = true;
+        return true;
+    }
+
+    private static void skipAc(BitReader in, Huffman ac) {
+        for (int k = 1; k < 64; ) {
+            int rs = ac.decode(in);
+            int r = rs >> 4, s = rs & 0x0f;
+            if (s == 0) {
+                if (r != 15) return;                                  // EOB
+                k += 16;
+            } else {
+                k += r;
+                in.skip(s);
+                k++;
+            }
+        }
+    }
+
+    private void skipEntropyData() {
+        // Entropy-coded bytes never contain 0xFF followed by anything but 0x00 or RSTn
+        while (pos + 1 < data.length) {
+            if ((data[pos] & 0xff) == 0xFF) {
+                int m = data[pos + 1] & 0xff;
+                if (m != 0 && m != 0xFF && !(m >= 0xD0 && m <= 0xD7)) return;
+            }
+            pos++;
+        }
+        pos = data.length;
+    }
+
+    private DcPlane plane() {
+        int c0w = ceilDiv(width * compH[0], hMax), c0h = ceilDiv(height * compV[0], vMax);
+        int bx = ceilDiv(c0w, 8), by = ceilDiv(c0h, 8);
+        int[] q = quant[compQ[0]];
+        if (q == null) return null;
+        int q0 = q[0];
+        int[] luma = new int[bx * by];
+        for (int y = 0; y < by; y++) {
+            for (int x = 0; x < bx; x++) {
+                // block mean = DC * Q0 / 8, samples are level-shifted by 128
+                int v = (int) Math.round(dc[y * dcStride + x] * q0 / 8.0) + 128;
+                luma[y * bx + x] = Math.max(0, Math.min(255, v));
+            }
+        }
+        return new DcPlane(width, height, bx, by, luma);
+    }
+
+    private Huffman dcTable(int id) {
+        if (dcTables[id] == null) throw new IllegalStateException("Missing DC table " + id);
+        return dcTables[id];
+    }
+
+    private Huffman acTable(int id) {
+        if (acTables[id] == null) throw new IllegalStateException("Missing AC table " + id);
+        return acTables[id];
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < compId.length; i++) if (compId[i] == id) return i;
+        return -1;
+    }
+
+    private int u16(int p) {
+        return ((data[p] & 0xff) << 8) | (data[p + 1] & 0xff);
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    /** Canonical Huffman table with a 9-bit lookahead (JPEG Annex C / F.2.2.3). */
+    private static final class Huffman {
+        final int[] lut = new int[1 << LOOKAHEAD];  // (length << 8 | symbol), 0 = longer code
+        final int[] maxCode = new int[18];
+        final int[] valPtr = new int[17];
+        final int[] minCode = new int[17];
+        final int[] symbols;
+
+        Huffman(int[] counts, int[] symbols) {
+            this.symbols = symbols;
+            int code = 0, k = 0;
+            for (int len = 1; len <= 16; len++) {
+                valPtr[len] = k;
+                minCode[len] = code;
+                for (int i = 0; i < counts[len]; i++, k++, code++) {
+                    if (len <= LOOKAHEAD) {
+                        int shift = LOOKAHEAD - len;
+                        for (int fill = 0; fill < (1 << shift); fill++) lut[(code << shift) | fill] = (len << 8) | symbols[k];
+                    }
+                }
+                maxCode[len] = counts[len] > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+
+        int decode(BitReader in) {
+            int e = lut[in.peek(LOOKAHEAD)];
+            if (e != 0) {
+                in.skip(e >> 8);
+                return e & 0xff;
+            }
+            for (int len = LOOKAHEAD + 1; len <= 16; len++) {
+                int code = in.peek(len);
+                if (code <= maxCode[len]) {
+                    in.skip(len);
+                    return symbols[valPtr[len] + code - minCode[len]];
+                }
+            }
+            throw new IllegalStateException("Bad Huffman code");
+        }
+    }
+
+    /** MSB-first bit reader over entropy-coded data with 0xFF00 unstuffing. */
+    private static final class BitReader {
+        private final byte[] data;
+        private int pos;
+        private long acc;      // valid bits are left-aligned
+        private int bits;
+        private int padded;    // zero bytes supplied past a marker or the end
+        private boolean atMarker;
+
+        BitReader(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        private void fill() {
+            while (bits <= 56) {
+                int b = 0;
+                if (!atMarker && pos < data.length) {
+                    b = data[pos] & 0xff;
+                    if (b == 0xFF) {
+                        int next = pos + 1 < data.length ? data[pos + 1] & 0xff : -1;
+                        if (next == 0) pos += 2;
+                        else { atMarker = true; b = 0; padded++; }
+                    } else {
+                        pos++;
+                    }
+                } else {
+                    padded++;
+                }
+                acc |= (long) b << (56 - bits);
+                bits += 8;
+            }
+        }
+
+        int peek(int n) {
+            if (bits < n) fill();
+            return (int) (acc >>> (64 - n));
+        }
+
+        void skip(int n) {
+            if (bits < n) fill();
+            acc <<= n;
+            bits -= n;
+        }
+
+        int bit() {
+            int b = peek(1);
+            skip(1);
+            return b;
+        }
+
+        /** JPEG RECEIVE + EXTEND for an {@code s}-bit magnitude category. */
+        int receiveExtend(int s) {
+            if (s == 0) return 0;
+            int v = peek(s);
+            skip(s);
+            return v < (1 << (s - 1)) ? v - (1 << s) + 1 : v;
+        }
+
+        /** Discards buffered bits and consumes the next RSTn marker. */
+        void restart() {
+            acc = 0;
+            bits = 0;
+            padded = 0;
+            atMarker = false;
+            while (pos + 1 < data.length) {
+                if ((data[pos] & 0xff) == 0xFF) {
+                    int m = data[pos + 1] & 0xff;
+                    if (m >= 0xD0 && m <= 0xD7) { pos += 2; return; }
+                    if (m != 0 && m != 0xFF) return;                   // unexpected marker: keep going, data is corrupt
+                }
+                pos++;
+            }
+        }
+
+        int overrun() {
+            // bytes padded beyond what was actually consumed
+            return Math.max(0, padded - bits / 8);
+        }
+
+        int position() {
+            return pos;
+        }
+    }
+}
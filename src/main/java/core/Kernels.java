@@ -0,0 +1,80 @@
+package core;
+
+/**
+ * The inner loops of preprocessing and hashing: RGB to luma, the box filter's row sums and
+ * row accumulation, and the small matrix products of the DCT.
+ *
+ * Two implementations exist. The scalar one is the default. The SIMD one is built on the
+ * incubating Vector API, lives in {@code src/simd/java} and is only compiled by the
+ * {@code simd} Maven profile; it is loaded by name and used when it was built and the JVM
+ * runs with {@code --add-modules jdk.incubator.vector -Didf.simd=true}. Both produce bit-identical
+ * results: the integer kernels are exact, and the floating-point product keeps every output's
+ * terms in the same order and rounds each multiply and add separately, so only the number of
+ * outputs computed at once differs.
+ */
+public interface Kernels {
+
+    String SIMD_PROPERTY = "idf.simd";
+
+    /** The implementation picked at startup. */
+    Kernels ACTIVE = select();
+
+    /** Writes the Rec.601 luma of {@code n} packed 0xRRGGBB pixels from {@code rgb[off..]} to {@code out[0..n)}. */
+    void lumaRgb(int[] rgb, int off, int[] out, int n);
+
+    /** Like {@link #lumaRgb}, for 0xAARRGGBB pixels composited over black. */
+    void lumaArgb(int[] argb, int off, int[] out, int n);
+
+    /** Sum of {@code a[from..to)}. */
+    long sum(int[] a, int from, int to);
+
+    /** {@code dst[off + i] += scale * src[i]} for {@code i < n}. */
+    void addScaled(long[] dst, int off, long[] src, long scale, int n);
+
+    /**
+     * {@code out[i][j] = sum over t of a[i][t] * b[t][j]}, with terms added in order of {@code t}.
+     * {@code a} is {@code rows x inner} and dense, {@code b} has row stride {@code bStride}, and
+     * {@code out} is {@code rows x cols} and dense.
+     */
+    void multiply(double[] a, double[] b, int bStride, double[] out, int rows, int inner, int cols);
+
+    String name();
+
+    /** Whether the Vector API kernels were built (profile {@code simd}) and their module resolved at startup. */
+    static boolean vectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && vectorClass() != null;
+    }
+
+    static Kernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    /** The Vector API kernels regardless of {@link #SIMD_PROPERTY}, for comparisons and benchmarks. */
+    static Kernels simd() {
+        if (!vectorAvailable()) throw new UnsupportedOperationException("Build with -Psimd and run with --add-modules jdk.incubator.vector");
+        try {
+            return (Kernels) vectorClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Class<?> vectorClass() {
+        try {
+            return Class.forName("core.VectorKernels");
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static Kernels select() {
+        if (Boolean.getBoolean(SIMD_PROPERTY) && vectorAvailable()) {
+            try {
+                return simd();
+            } catch (RuntimeException | LinkageError e) {
+                // Fall back to the scalar kernels
+            }
+        }
+        return ScalarKernels.INSTANCE;
+    }
+}
@@ -0,0 +1,235 @@
+package core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Fused grayscale conversion + area downscale.
+ *
+ * Reads the source raster directly for the common layouts (INT_RGB, INT_ARGB, 3BYTE_BGR,
+ * BYTE_GRAY) and averages luma into a small {@code w x h} grid in a single pass, so no
+ * full-resolution intermediate image is ever allocated. Other layouts go through
+ * {@code getRGB} in short strips.
+ *
+ * Averaging is an exact area (box) filter in integer arithmetic: every source pixel
+ * contributes to each destination cell in proportion to the overlapping area. The result
+ * therefore commutes with flips and 90° rotations of the source.
+ */
+public final class Luma {
+
+    private static final int STRIP = 256;
+    private static final Kernels KERNELS = Kernels.ACTIVE;
+
+    private Luma() {}
+
+    /** Rec.601 luma with 8-bit fixed-point weights (77 + 150 + 29 = 256). */
+    public static int of(int r, int g, int b) {
+        return (77 * r + 150 * g + 29 * b + 128) >> 8;
+    }
+
+    /** Luma of a packed 0xRRGGBB pixel. */
+    public static int ofRgb(int rgb) {
+        return of((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+    /** Luma of a packed 0xAARRGGBB pixel, composited over black. */
+    public static int ofArgb(int argb) {
+        int a = argb >>> 24;
+        int l = ofRgb(argb);
+        return a == 0xff ? l : (l * a + 127) / 255;
+    }
+
+    /** Convenience overload that allocates the destination grid. */
+    public static int[] downscale(BufferedImage src, int w, int h) {
+        int[] out = new int[w * h];
+        downscale(src, w, h, out);
+        return out;
+    }
+
+    /**
+     * Averages the luma of {@code src} into a row-major {@code w x h} grid of 0..255 values.
+     *
+     * @param out caller-supplied destination, length at least {@code w * h}
+     */
+    public static void downscale(BufferedImage src, int w, int h, int[] out) {
+        Accumulator acc = new Accumulator(src.getWidth(), src.getHeight(), w, h);
+        Raster raster = src.getRaster();
+        switch (src.getType()) {
+            case BufferedImage.TYPE_INT_RGB -> readPackedInt(raster, acc, false);
+            case BufferedImage.TYPE_INT_ARGB -> readPackedInt(raster, acc, true);
+            case BufferedImage.TYPE_3BYTE_BGR -> readInterleavedBytes(raster, acc, 3);
+            case BufferedImage.TYPE_BYTE_GRAY -> readInterleavedBytes(raster, acc, 1);
+            default -> readRgbStrips(src, acc);
+        }
+        acc.finish(out);
+    }
+
+    private static void readPackedInt(Raster raster, Accumulator acc, boolean alpha) {
+        var sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+        int stride = sm.getScanlineStride();
+        int base = raster.getDataBuffer().getOffset()
+                - raster.getSampleModelTranslateY() * stride
+                - raster.getSampleModelTranslateX();
+        int w = raster.getWidth(), h = raster.getHeight();
+        int minX = raster.getMinX(), minY = raster.getMinY();
+        int[] luma = new int[w];
+        for (int y = 0; y < h; y++) {
+            int i = base + (minY + y) * stride + minX;
+            if (alpha) KERNELS.lumaArgb(data, i, luma, w);
+            else KERNELS.lumaRgb(data, i, luma, w);
+            acc.addRow(luma, 0);
+        }
+    }
+
+    private static void readInterleavedBytes(Raster raster, Accumulator acc, int bands) {
+        var sm = (ComponentSampleModel) raster.getSampleModel();
+        byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int stride = sm.getScanlineStride();
+        int pixelStride = sm.getPixelStride();
+        int[] offsets = sm.getBandOffsets();
+        int base = raster.getDataBuffer().getOffset()
+                - raster.getSampleModelTranslateY() * stride
+                - raster.getSampleModelTranslateX() * pixelStride;
+        int w = raster.getWidth(), h = raster.getHeight();
+        int minX = raster.getMinX(), minY = raster.getMinY();
+        int[] luma = new int[w];
+        for (int y = 0; y < h; y++) {
+            int i = base + (minY + y) * stride + minX * pixelStride;
+            if (bands == 1) {
+                int o = offsets[0];
+                for (int x = 0; x < w; x++, i += pixelStride) luma[x] = data[i + o] & 0xff;
+            } else {
+                int or = offsets[0], og = offsets[1], ob = offsets[2];
+                for (int x = 0; x < w; x++, i += pixelStride) {
+                    luma[x] = of(data[i + or] & 0xff, data[i + og] & 0xff, data[i + ob] & 0xff);
+                }
+            }
+            acc.addRow(luma, 0);
+        }
+    }
+
+    // Fallback for indexed, 16-bit, custom... layouts: getRGB in fixed-size strips
+    private static void readRgbStrips(BufferedImage src, Accumulator acc) {
+        int w = src.getWidth(), h = src.getHeight();
+        int[] strip = new int[Math.min(w, STRIP)];
+        boolean alpha = src.getColorModel().hasAlpha();
+        for (int y = 0; y < h; y++) {
+            for (int x0 = 0; x0 < w; x0 += strip.length) {
+                int n = Math.min(strip.length, w - x0);
+                src.getRGB(x0, y, n, 1, strip, 0, n);
+                for (int i = 0; i < n; i++) acc.add(alpha ? ofArgb(strip[i]) : ofRgb(strip[i]));
+            }
+        }
+    }
+
+    /**
+     * Streaming area-average accumulator. Luma values are pushed in raster order
+     * (left to right, top to bottom); memory is {@code O(w * h)} regardless of source size.
+     *
+     * Coordinates are scaled so that a source pixel is {@code w} (resp. {@code h}) units wide
+     * and a destination cell is {@code srcW} (resp. {@code srcH}) units wide; overlaps are
+     * then exact integers.
+     */
+    public static final class Accumulator {
+        private final int srcW, srcH, w, h;
+        private final long[] row;   // current source row, binned horizontally
+        private final long[] grid;
+
+        private int x, y;           // next source pixel
+        private long xs;            // left edge of pixel x, scaled
+        private int bx;             // destination column containing xs
+        private long bxEnd;         // right edge of column bx, scaled
+
+        public Accumulator(int srcW, int srcH, int w, int h) {
+            if (srcW <= 0 || srcH <= 0) throw new IllegalArgumentException("Empty source: " + srcW + "x" + srcH);
+            if (w <= 0 || h <= 0) throw new IllegalArgumentException("Empty target: " + w + "x" + h);
+            this.srcW = srcW;
+            this.srcH = srcH;
+            this.w = w;
+            this.h = h;
+            this.row = new long[w];
+            this.grid = new long[w * h];
+            this.bxEnd = srcW;
+        }
+
+        public int sourceWidth() { return srcW; }
+        public int sourceHeight() { return srcH; }
+
+        /** Adds the next pixel's luma (0..255). */
+        public void add(int luma) {
+            long s = xs, e = xs + w;
+            while (e > bxEnd) {
+                row[bx] += (bxEnd - s) * luma;
+                s = bxEnd;
+                bx++;
+                bxEnd += srcW;
+            }
+            row[bx] += (e - s) * luma;
+            if (e == bxEnd && bx < w - 1) {
+                bx++;
+                bxEnd += srcW;
+            }
+            xs = e;
+            if (++x == srcW) endRow();
+        }
+
+        /**
+         * Adds a whole row of luma values. At the start of a row this bins by column: the
+         * pixels a cell covers completely are summed in one run, and only the two edge pixels
+         * are weighted by their partial overlap.
+         */
+        public void addRow(int[] luma, int off) {
+            if (x != 0) {
+                for (int i = 0; i < srcW; i++) add(luma[off + i]);
+                return;
+            }
+            long cs = 0;
+            for (int c = 0; c < w; c++) {
+                long ce = cs + srcW;
+                int xa = (int) (cs / w), xb = (int) ((ce - 1) / w);
+                if (xa == xb) {
+                    row[c] += (ce - cs) * luma[off + xa];
+                } else {
+                    long edges = ((long) (xa + 1) * w - cs) * luma[off + xa] + (ce - (long) xb * w) * luma[off + xb];
+                    row[c] += edges + (long) w * KERNELS.sum(luma, off + xa + 1, off + xb);
+                }
+                cs = ce;
+            }
+            endRow();
+        }
+
+        private void endRow() {
+            if (y >= srcH) throw new IllegalStateException("More rows than declared: " + srcH);
+            long s = (long) y * h, e = s + h;
+            int by = (int) (s / srcH);
+            long byEnd = (long) (by + 1) * srcH;
+            while (s < e) {
+                long seg = Math.min(e, byEnd) - s;
+                KERNELS.addScaled(grid, by * w, row, seg, w);
+                s += seg;
+                if (s == byEnd) {
+                    by++;
+                    byEnd += srcH;
+                }
+            }
+            java.util.Arrays.fill(row, 0L);
+            x = 0;
+            xs = 0;
+            bx = 0;
+            bxEnd = srcW;
+            y++;
+        }
+
+        /** Writes the rounded averages into {@code out}; all rows must have been added. */
+        public void finish(int[] out) {
+            if (y != srcH || x != 0) throw new IllegalStateException("Incomplete source: " + y + " of " + srcH + " rows");
+            long total = (long) srcW * srcH;
+            for (int i = 0; i < grid.length; i++) out[i] = (int) ((grid[i] + total / 2) / total);
+        }
+    }
+}
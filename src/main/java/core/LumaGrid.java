@@ -0,0 +1,61 @@
+package core;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A small row-major grid of 0..255 luma values, the common input of all hashers.
+ * Built once per decoded image and shared, so several hashes cost one preprocessing pass.
+ */
+public record LumaGrid(int width, int height, int[] px) {
+
+    public LumaGrid {
+        if (px.length != width * height)
+            throw new IllegalArgumentException("Grid size mismatch: " + width + "x" + height + " vs " + px.length);
+    }
+
+    public static LumaGrid of(BufferedImage img, int w, int h) {
+        return new LumaGrid(w, h, Luma.downscale(img, w, h));
+    }
+
+    public int at(int x, int y) { return px[y * width + x]; }
+
+    /**
+     * This grid with EXIF orientation {@code orientation} applied, with the same pixel mapping as
+     * {@link Exif#transform}; 5..8 swap width and height, unknown values return this grid.
+     *
+     * Because the area filter is exact and treats both axes alike, orienting the downscaled
+     * grid gives the same values as downscaling the oriented image, without a full-size copy.
+     */
+    public LumaGrid orient(int orientation) {
+        if (orientation < 2 || orientation > 8) return this;
+        boolean swap = orientation >= 5;
+        int w = swap ? height : width, h = swap ? width : height;
+        int[] out = new int[px.length];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int sx, sy;
+                switch (orientation) {
+                    case 2 -> { sx = width - 1 - x; sy = y; }
+                    case 3 -> { sx = width - 1 - x; sy = height - 1 - y; }
+                    case 4 -> { sx = x; sy = height - 1 - y; }
+                    case 5 -> { sx = y; sy = x; }
+                    case 6 -> { sx = y; sy = height - 1 - x; }
+                    case 7 -> { sx = width - 1 - y; sy = height - 1 - x; }
+                    default -> { sx = width - 1 - y; sy = x; } // 8
+                }
+                out[y * w + x] = px[sy * width + sx];
+            }
+        }
+        return new LumaGrid(w, h, out);
+    }
+
+    /** Area-averages this grid down (or up) to {@code w x h}; returns the pixels directly if unchanged. */
+    public int[] resample(int w, int h) {
+        if (w == width && h == height) return px;
+        Luma.Accumulator acc = new Luma.Accumulator(width, height, w, h);
+        for (int y = 0; y < height; y++) acc.addRow(px, y * width);
+        int[] out = new int[w * h];
+        acc.finish(out);
+        return out;
+    }
+}
@@ -0,0 +1,90 @@
+package core;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * An {@link ImageInputStream} over a {@link ByteBuffer}: a memory-mapped file, or an array
+ * already in memory.
+ *
+ * {@code ImageIO.read(File)} goes through a {@code RandomAccessFile} with small buffered
+ * reads, and {@code createImageInputStream(InputStream)} copies everything into its own
+ * cache. Here every read is a copy out of the mapping, so decoding a small JPEG costs an
+ * open, an mmap and page faults instead of dozens of read syscalls.
+ */
+public final class MappedImageInputStream extends ImageInputStreamImpl {
+
+    /** Files above this size use ImageIO's buffered file stream instead of a mapping. */
+    static final long MAX_MAP = 64L << 20;
+
+    private final ByteBuffer buf;
+    private boolean closed;
+
+    public MappedImageInputStream(ByteBuffer buf) {
+        this.buf = buf.duplicate();
+    }
+
+    /** Wraps file contents already in memory, without copying them. */
+    public static MappedImageInputStream of(byte[] data) {
+        return new MappedImageInputStream(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Maps {@code path} read-only; empty, special (non-regular) and very large files fall back
+     * to {@link ImageIO#createImageInputStream}.
+     */
+    public static ImageInputStream open(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = ch.size();
+                // The mapping stays valid after the channel is closed
+                if (size > 0 && size <= MAX_MAP) return new MappedImageInputStream(ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+        ImageInputStream in = ImageIO.createImageInputStream(path.toFile());
+        if (in == null) throw new javax.imageio.IIOException("Can't read input file!");
+        return in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= buf.limit()) return -1;
+        return buf.get((int) streamPos++) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) return 0;
+        bitOffset = 0;
+        int n = (int) Math.min(len, buf.limit() - streamPos);
+        if (n <= 0) return -1;
+        buf.get((int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    /** Idempotent, since {@code ImageIO.read(ImageInputStream)} closes the stream it was given. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        super.close();
+    }
+
+    @Override
+    public long length() {
+        return buf.limit();
+    }
+}
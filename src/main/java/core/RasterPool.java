@@ -0,0 +1,97 @@
+package core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable decode destinations, so parallel decoding does not allocate (and G1 does not have
+ * to collect) a fresh multi-megabyte raster per image.
+ *
+ * Images are bucketed by type and by size rounded up to {@link #STEP} pixels per side;
+ * {@link #acquire} hands out a bucket-sized image and callers use the top-left
+ * {@code w x h} region (e.g. via {@code ImageReadParam.setDestination} and
+ * {@code getSubimage}). {@link #release} accepts that region, or any image sharing its
+ * raster, and keeps it unless the pool would then retain more than its byte cap. Only
+ * non-indexed standard types are pooled; a raster that is never released is simply
+ * garbage collected.
+ */
+final class RasterPool {
+
+    static final int STEP = 256;
+
+    private record Key(int type, int width, int height) {}
+
+    private record Pooled(ColorModel cm, WritableRaster raster, long bytes) {}
+
+    private final long maxRetainedBytes;
+    private final Map<Key, Queue<Pooled>> buckets = new ConcurrentHashMap<>();
+    private final Set<WritableRaster> idle = ConcurrentHashMap.newKeySet(); // guards against double release
+    private final AtomicLong retained = new AtomicLong();
+
+    RasterPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    static boolean poolable(int type) {
+        return switch (type) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+                 BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+                 BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * A {@code type} image of at least {@code w x h}; contents are unspecified.
+     *
+     * @throws IllegalArgumentException if {@code type} is not {@linkplain #poolable poolable}
+     */
+    BufferedImage acquire(int type, int w, int h) {
+        if (!poolable(type)) throw new IllegalArgumentException("Type not poolable: " + type);
+        Key key = new Key(type, round(w), round(h));
+        Queue<Pooled> q = buckets.get(key);
+        Pooled p = q == null ? null : q.poll();
+        if (p == null) return new BufferedImage(key.width, key.height, type);
+        retained.addAndGet(-p.bytes);
+        idle.remove(p.raster);
+        return new BufferedImage(p.cm, p.raster, p.cm.isAlphaPremultiplied(), null);
+    }
+
+    /** Returns the raster behind {@code img} (or a subimage of it) to the pool. */
+    void release(BufferedImage img) {
+        if (img == null || !poolable(img.getType())) return;
+        WritableRaster root = img.getRaster();
+        while (root.getWritableParent() != null && root.getWritableParent() != root) root = root.getWritableParent();
+        int w = root.getWidth(), h = root.getHeight();
+        if (w % STEP != 0 || h % STEP != 0 || root.getMinX() != 0 || root.getMinY() != 0) return; // not one of ours
+        long bytes = bytes(root.getDataBuffer());
+        if (!idle.add(root)) return;
+        if (retained.addAndGet(bytes) > maxRetainedBytes) {
+            retained.addAndGet(-bytes);
+            idle.remove(root);
+            return;
+        }
+        buckets.computeIfAbsent(new Key(img.getType(), w, h), k -> new ConcurrentLinkedQueue<>())
+                .add(new Pooled(img.getColorModel(), root, bytes));
+    }
+
+    long retainedBytes() {
+        return retained.get();
+    }
+
+    private static int round(int n) {
+        return Math.max(1, (n + STEP - 1) / STEP) * STEP;
+    }
+
+    private static long bytes(DataBuffer db) {
+        return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+}
@@ -0,0 +1,46 @@
+package core;
+
+/** Plain-Java {@link Kernels}; the default, and the reference the SIMD kernels must match. */
+final class ScalarKernels implements Kernels {
+
+    static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    private ScalarKernels() {}
+
+    @Override
+    public void lumaRgb(int[] rgb, int off, int[] out, int n) {
+        for (int i = 0; i < n; i++) out[i] = Luma.ofRgb(rgb[off + i]);
+    }
+
+    @Override
+    public void lumaArgb(int[] argb, int off, int[] out, int n) {
+        for (int i = 0; i < n; i++) out[i] = Luma.ofArgb(argb[off + i]);
+    }
+
+    @Override
+    public long sum(int[] a, int from, int to) {
+        long s = 0;
+        for (int i = from; i < to; i++) s += a[i];
+        return s;
+    }
+
+    @Override
+    public void addScaled(long[] dst, int off, long[] src, long scale, int n) {
+        for (int i = 0; i < n; i++) dst[off + i] += scale * src[i];
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, int bStride, double[] out, int rows, int inner, int cols) {
+        for (int i = 0; i < rows; i++) {
+            int ai = i * inner;
+            for (int j = 0; j < cols; j++) {
+                double sum = 0.0;
+                for (int t = 0; t < inner; t++) sum += a[ai + t] * b[t * bStride + j];
+                out[i * cols + j] = sum;
+            }
+        }
+    }
+
+    @Override
+    public String name() { return "scalar"; }
+}
@@ -0,0 +1,305 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming PNG and BMP decoding straight into a luma grid.
+ *
+ * Rows are decoded one at a time and pushed into a {@link Luma.Accumulator}, so a hashing
+ * decode holds one or two rows plus the grid bins regardless of image size. PNG IDAT data
+ * is inflated row by row and unfiltered against the previous row; BMP rows are read in
+ * place from the (possibly memory-mapped) buffer, bottom-up files in reverse.
+ *
+ * Luma follows {@link Luma#downscale} on the image ImageIO would produce: palette and alpha
+ * pixels are composited over black, sub-byte gray is scaled to 0..255 and 16-bit samples
+ * are rounded to 8 bits. Supported: non-interlaced PNG of every colour type and bit depth,
+ * and uncompressed 1/4/8/24/32-bit BMPs with a BITMAPINFOHEADER or later. Anything else
+ * returns {@code null} so the caller can fall back to {@link ImageLoader}; corrupt data
+ * also returns {@code null}.
+ */
+public final class ScanlineLuma {
+
+    /**
+     * Largest file {@link #lumaGrid(Path, int, int)} maps: one {@link ByteBuffer}. Decoding is
+     * constant-memory whatever the size, so unlike {@link MappedImageInputStream#MAX_MAP} this
+     * is only the buffer's own limit.
+     */
+    static final long MAX_MAP = Integer.MAX_VALUE;
+
+    private ScanlineLuma() {}
+
+    /** Maps {@code path} and decodes it; {@code null} if unsupported or larger than {@link #MAX_MAP}. */
+    public static LumaGrid lumaGrid(Path path, int w, int h) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > MAX_MAP) return null;
+            return lumaGrid(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), w, h);
+        }
+    }
+
+    /** Decodes a PNG or BMP held in {@code data} to a {@code w x h} grid, or returns {@code null}. */
+    public static LumaGrid lumaGrid(ByteBuffer data, int w, int h) {
+        ByteBuffer buf = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (isPng(buf)) return png(buf, w, h);
+            if (isBmp(buf)) return bmp(buf.order(ByteOrder.LITTLE_ENDIAN), w, h);
+        } catch (RuntimeException | DataFormatException e) {
+            // truncated or malformed: let the full decoder report it
+        }
+        return null;
+    }
+
+    static boolean isPng(ByteBuffer b) {
+        return b.limit() >= 33 && (b.get(0) & 0xff) == 0x89 && b.get(1) == 'P' && b.get(2) == 'N' && b.get(3) == 'G';
+    }
+
+    static boolean isBmp(ByteBuffer b) {
+        return b.limit() >= 54 && b.get(0) == 'B' && b.get(1) == 'M';
+    }
+
+    /* ---- PNG ---- */
+
+    private static LumaGrid png(ByteBuffer b, int gw, int gh) throws DataFormatException {
+        if (b.getInt(12) != 0x49484452) return null;                    // "IHDR"
+        int width = b.getInt(16), height = b.getInt(20);
+        int depth = b.get(24) & 0xff, colorType = b.get(25) & 0xff, interlace = b.get(28) & 0xff;
+        if (width <= 0 || height <= 0 || interlace != 0) return null;
+        int channels = switch (colorType) {
+            case 0, 3 -> 1;
+            case 2 -> 3;
+            case 4 -> 2;
+            case 6 -> 4;
+            default -> -1;
+        };
+        if (channels < 0 || (depth != 8 && depth != 16 && (colorType != 0 && colorType != 3 || depth > 8))) return null;
+
+        int bitsPerPixel = channels * depth;
+        int rowBytes = (int) (((long) width * bitsPerPixel + 7) / 8);
+        int bpp = Math.max(1, bitsPerPixel / 8);                          // filter unit
+        int[] palette = null;                                            // ARGB
+        int[] trns = null;                                               // gray or RGB key
+        byte[] cur = new byte[rowBytes + 1], prev = new byte[rowBytes + 1];
+        int[] luma = new int[width];
+        Luma.Accumulator acc = new Luma.Accumulator(width, height, gw, gh);
+        Inflater inf = new Inflater();
+        try {
+            int pos = 8, y = 0, filled = 0;
+            while (pos + 8 <= b.limit() && y < height) {
+                int len = b.getInt(pos), type = b.getInt(pos + 4);
+                int data = pos + 8;
+                if (len < 0 || data + len > b.limit()) return null;
+                if (type == 0x49454E44) break;                            // IEND
+                switch (type) {
+                    case 0x504C5445 -> {                                  // PLTE
+                        palette = new int[256];
+                        for (int i = 0; i < len / 3 && i < 256; i++) {
+                            int p = data + 3 * i;
+                            palette[i] = 0xff000000 | (b.get(p) & 0xff) << 16 | (b.get(p + 1) & 0xff) << 8 | (b.get(p + 2) & 0xff);
+                        }
+                    }
+                    case 0x74524E53 -> {                                  // tRNS
+                        if (colorType == 3 && palette != null) {
+                            for (int i = 0; i < len && i < 256; i++) palette[i] = (palette[i] & 0xffffff) | (b.get(data + i) & 0xff) << 24;
+                        } else if (colorType == 0 && len >= 2) {
+                            trns = new int[]{b.getShort(data) & 0xffff};
+                        } else if (colorType == 2 && len >= 6) {
+                            trns = new int[]{b.getShort(data) & 0xffff, b.getShort(data + 2) & 0xffff, b.getShort(data + 4) & 0xffff};
+                        }
+                    }
+                    case 0x49444154 -> {                                  // IDAT
+                        if (colorType == 3 && palette == null) return null;
+                        inf.setInput(b.slice(data, len));
+                        while (y < height) {
+                            int n = inf.inflate(cur, filled, cur.length - filled);
+                            filled += n;
+                            if (filled < cur.length) {
+                                if (n > 0) continue;
+                                if (inf.needsInput()) break;              // row continues in the next IDAT
+                                return null;                             // stream ended early, or needs a dictionary
+                            }
+                            if (!unfilter(cur, prev, bpp)) return null;
+                            pngRow(cur, luma, width, depth, colorType, palette, trns);
+                            acc.addRow(luma, 0);
+                            byte[] t = prev; prev = cur; cur = t;
+                            filled = 0;
+                            y++;
+                        }
+                    }
+                    default -> { }
+                }
+                pos = data + len + 4;                                     // skip CRC
+            }
+            if (y < height) return null;
+        } finally {
+            inf.end();
+        }
+        int[] out = new int[gw * gh];
+        acc.finish(out);
+        return new LumaGrid(gw, gh, out);
+    }
+
+    /** Reverses the PNG filter of {@code cur} (filter type in byte 0) in place. */
+    private static boolean unfilter(byte[] cur, byte[] prev, int bpp) {
+        int n = cur.length;
+        switch (cur[0]) {
+            case 0 -> { }
+            case 1 -> { for (int i = 1 + bpp; i < n; i++) cur[i] += cur[i - bpp]; }
+            case 2 -> { for (int i = 1; i < n; i++) cur[i] += prev[i]; }
+            case 3 -> {
+                for (int i = 1; i < n; i++) {
+                    int left = i > bpp ? cur[i - bpp] & 0xff : 0;
+                    cur[i] += (byte) ((left + (prev[i] & 0xff)) >> 1);
+                }
+            }
+            case 4 -> {
+                for (int i = 1; i < n; i++) {
+                    int a = i > bpp ? cur[i - bpp] & 0xff : 0, up = prev[i] & 0xff, c = i > bpp ? prev[i - bpp] & 0xff : 0;
+                    int p = a + up - c, pa = Math.abs(p - a), pb = Math.abs(p - up), pc = Math.abs(p - c);
+                    cur[i] += (byte) (pa <= pb && pa <= pc ? a : pb <= pc ? up : c);
+                }
+            }
+            default -> { return false; }
+        }
+        return true;
+    }
+
+    private static void pngRow(byte[] row, int[] luma, int width, int depth, int colorType, int[] palette, int[] trns) {
+        int o = 1;
+        switch (colorType) {
+            case 0 -> {
+                if (depth == 16) {
+                    for (int x = 0; x < width; x++, o += 2) {
+                        int v = u16(row, o);
+                        luma[x] = trns != null && v == trns[0] ? 0 : to8(v);
+                    }
+                } else if (depth == 8) {
+                    for (int x = 0; x < width; x++, o++) {
+                        int v = row[o] & 0xff;
+                        luma[x] = trns != null && v == trns[0] ? 0 : v;
+                    }
+                } else {
+                    int max = (1 << depth) - 1;
+                    for (int x = 0; x < width; x++) {
+                        int v = subByte(row, x, depth);
+                        luma[x] = trns != null && v == trns[0] ? 0 : (v * 255 + max / 2) / max;
+                    }
+                }
+            }
+            case 3 -> {
+                for (int x = 0; x < width; x++) {
+                    int i = depth == 8 ? row[1 + x] & 0xff : subByte(row, x, depth);
+                    luma[x] = Luma.ofArgb(palette[i]);
+                }
+            }
+            case 2 -> {
+                for (int x = 0; x < width; x++) {
+                    int r, g, bl;
+                    boolean key;
+                    if (depth == 16) {
+                        int r16 = u16(row, o), g16 = u16(row, o + 2), b16 = u16(row, o + 4);
+                        key = trns != null && r16 == trns[0] && g16 == trns[1] && b16 == trns[2];
+                        r = to8(r16); g = to8(g16); bl = to8(b16);
+                        o += 6;
+                    } else {
+                        r = row[o] & 0xff; g = row[o + 1] & 0xff; bl = row[o + 2] & 0xff;
+                        key = trns != null && r == trns[0] && g == trns[1] && bl == trns[2];
+                        o += 3;
+                    }
+                    luma[x] = key ? 0 : Luma.of(r, g, bl);
+                }
+            }
+            case 4 -> {
+                for (int x = 0; x < width; x++) {
+                    int v, a;
+                    if (depth == 16) { v = to8(u16(row, o)); a = to8(u16(row, o + 2)); o += 4; }
+                    else { v = row[o] & 0xff; a = row[o + 1] & 0xff; o += 2; }
+                    luma[x] = Luma.ofArgb(a << 24 | v << 16 | v << 8 | v);
+                }
+            }
+            default -> {                                                  // 6: RGBA
+                for (int x = 0; x < width; x++) {
+                    int r, g, bl, a;
+                    if (depth == 16) {
+                        r = to8(u16(row, o)); g = to8(u16(row, o + 2)); bl = to8(u16(row, o + 4)); a = to8(u16(row, o + 6));
+                        o += 8;
+                    } else {
+                        r = row[o] & 0xff; g = row[o + 1] & 0xff; bl = row[o + 2] & 0xff; a = row[o + 3] & 0xff;
+                        o += 4;
+                    }
+                    luma[x] = Luma.ofArgb(a << 24 | r << 16 | g << 8 | bl);
+                }
+            }
+        }
+    }
+
+    private static int subByte(byte[] row, int x, int depth) {
+        int bit = x * depth;
+        return ((row[1 + (bit >> 3)] & 0xff) >> (8 - depth - (bit & 7))) & ((1 << depth) - 1);
+    }
+
+    private static int u16(byte[] b, int o) {
+        return (b[o] & 0xff) << 8 | (b[o + 1] & 0xff);
+    }
+
+    private static int to8(int v16) {
+        return (v16 * 255 + 32767) / 65535;
+    }
+
+    /* ---- BMP ---- */
+
+    private static LumaGrid bmp(ByteBuffer b, int gw, int gh) {
+        int dataOffset = b.getInt(10), dib = b.getInt(14);
+        if (dib < 40) return null;                                       // OS/2 core header
+        int width = b.getInt(18), rawHeight = b.getInt(22);
+        int bpp = b.getShort(28) & 0xffff, compression = b.getInt(30);
+        if (width <= 0 || rawHeight == 0 || rawHeight == Integer.MIN_VALUE || compression != 0) return null;
+        if (bpp != 1 && bpp != 4 && bpp != 8 && bpp != 24 && bpp != 32) return null;
+        boolean topDown = rawHeight < 0;
+        int height = Math.abs(rawHeight);
+        long stride = (((long) width * bpp + 31) / 32) * 4;
+        if (dataOffset < 0 || dataOffset + stride * height > b.limit()) return null;
+
+        int[] palette = null;
+        if (bpp <= 8) {
+            int used = b.getInt(46), n = used > 0 && used <= (1 << bpp) ? used : 1 << bpp;
+            palette = new int[1 << bpp];
+            int p = 14 + dib;
+            for (int i = 0; i < n; i++, p += 4) {
+                palette[i] = Luma.of(b.get(p + 2) & 0xff, b.get(p + 1) & 0xff, b.get(p) & 0xff);
+            }
+        }
+
+        int[] luma = new int[width];
+        Luma.Accumulator acc = new Luma.Accumulator(width, height, gw, gh);
+        for (int y = 0; y < height; y++) {
+            int row = (int) (dataOffset + stride * (topDown ? y : height - 1 - y));
+            switch (bpp) {
+                case 24, 32 -> {
+                    int step = bpp / 8;
+                    for (int x = 0, p = row; x < width; x++, p += step) {
+                        luma[x] = Luma.of(b.get(p + 2) & 0xff, b.get(p + 1) & 0xff, b.get(p) & 0xff);
+                    }
+                }
+                case 8 -> { for (int x = 0; x < width; x++) luma[x] = palette[b.get(row + x) & 0xff]; }
+                default -> {
+                    int mask = (1 << bpp) - 1;
+                    for (int x = 0; x < width; x++) {
+                        int bit = x * bpp;
+                        luma[x] = palette[((b.get(row + (bit >> 3)) & 0xff) >> (8 - bpp - (bit & 7))) & mask];
+                    }
+                }
+            }
+            acc.addRow(luma, 0);
+        }
+        int[] out = new int[gw * gh];
+        acc.finish(out);
+        return new LumaGrid(gw, gh, out);
+    }
+}
@@ -1,36 +1,57 @@
 package hash;
-import core.Gray;
-import core.Resize;
-import java.awt.image.BufferedImage;
+import core.LumaGrid;
 
+/**
+ * Difference hash: one bit per horizontally adjacent pair of a {@code (side + 1) x side}
+ * grid, set when the left cell is brighter. The default 8 gives the classic 64-bit hash;
+ * 16 gives 256 bits ({@code dHash16}).
+ */
 public class DHash implements Hasher {
-    public long hash(BufferedImage img) {
-        // Preprocess: convert to grayscale and resize
-        img = Gray.toGray(img);
-        img = Resize.resize(img, 9, 8);
+    private final int side;
 
+    public DHash() { this(8); }
+
+    /** @param side rows and pairs per row; {@code side * side} must be a multiple of 64 */
+    public DHash(int side) {
+        if (side < 8 || side * side % 64 != 0) throw new IllegalArgumentException("dHash side must give a multiple of 64 bits: " + side);
+        this.side = side;
+    }
+
+    public long hash(LumaGrid grid) {
+        if (side != 8) return hashWide(grid)[0];
         int w = 9, h = 8;
+        int[] px = grid.resample(w, h);
+
         long bits = 0L;
         int i=0;
         for (int y=0;y<h;y++) {
             for (int x=0;x<w-1;x++) {
-                int rgbLeft = img.getRGB(x, y);
-                int r = (rgbLeft >> 16) & 0xff;
-                int g = (rgbLeft >> 8) & 0xff;
-                int b = rgbLeft & 0xff;
-                int left = (int)(0.299 * r + 0.587 * g + 0.114 * b);
-
-                int rgbRight = img.getRGB(x+1, y);
-                r = (rgbRight >> 16) & 0xff;
-                g = (rgbRight >> 8) & 0xff;
-                b = rgbRight & 0xff;
-                int right = (int)(0.299 * r + 0.587 * g + 0.114 * b);
-
+                int left = px[y*w + x];
+                int right = px[y*w + x + 1];
                 if (left > right) bits |= (1L << i);
                 i++;
             }
         }
         return bits;
     }
-    public String name() { return "dHash"; }
+
+    @Override
+    public long[] hashWide(LumaGrid grid) {
+        if (side == 8) return new long[]{hash(grid)};
+        int w = side + 1;
+        int[] px = grid.resample(w, side);
+        long[] words = new long[bits() / 64];
+        int i = 0;
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++, i++) {
+                if (px[y * w + x] > px[y * w + x + 1]) words[i >>> 6] |= 1L << i;
+            }
+        }
+        return words;
+    }
+
+    @Override
+    public int bits() { return side * side; }
+
+    public String name() { return side == 8 ? "dHash" : "dHash" + side; }
 }
@@ -0,0 +1,65 @@
+package hash;
+
+import core.Kernels;
+
+/**
+ * Separable, table-driven 2D DCT-II with orthonormal scaling.
+ *
+ * The cosine basis (including the per-frequency scale factor) is computed once per size,
+ * so the transform is two small matrix products instead of an O(N^4) sum of Math.cos calls.
+ * {@link #forward(double[], double[], int)} can stop at the top-left KxK block, which is
+ * all pHash needs from a 32x32 input. Both products run on {@link Kernels}.
+ */
+public final class Dct {
+
+    private static final Kernels KERNELS = Kernels.ACTIVE;
+
+    private final int n;
+    // basis[u * n + x] = c(u) * cos((2x + 1) * u * PI / 2N)
+    private final double[] basis;
+    // transposed[x * n + u] = basis[u * n + x], so both passes read their right operand by rows
+    private final double[] transposed;
+
+    public Dct(int n) {
+        if (n <= 0) throw new IllegalArgumentException("DCT size must be positive: " + n);
+        this.n = n;
+        this.basis = new double[n * n];
+        for (int u = 0; u < n; u++) {
+            double cu = (u == 0) ? Math.sqrt(1.0 / n) : Math.sqrt(2.0 / n);
+            for (int x = 0; x < n; x++) {
+                basis[u * n + x] = cu * Math.cos(((2 * x + 1) * u * Math.PI) / (2 * n));
+            }
+        }
+        this.transposed = new double[n * n];
+        for (int u = 0; u < n; u++)
+            for (int x = 0; x < n; x++) transposed[x * n + u] = basis[u * n + x];
+    }
+
+    public int size() { return n; }
+
+    /** Full NxN transform of a row-major NxN input. */
+    public double[] forward(double[] in) {
+        double[] out = new double[n * n];
+        forward(in, out, n);
+        return out;
+    }
+
+    /**
+     * Computes only the top-left {@code k x k} low-frequency block.
+     *
+     * @param in  row-major NxN samples
+     * @param out row-major KxK destination (length at least k*k)
+     * @param k   block size, 1..N
+     */
+    public void forward(double[] in, double[] out, int k) {
+        if (k < 1 || k > n) throw new IllegalArgumentException("Block size out of range: " + k);
+        if (in.length < n * n || out.length < k * k) throw new IllegalArgumentException("Buffer too small");
+
+        // Row pass: tmp[y][v] = sum_x in[y][x] * basis[v][x], only for the k columns we keep
+        double[] tmp = new double[n * k];
+        KERNELS.multiply(in, transposed, n, tmp, n, n, k);
+
+        // Column pass: out[u][v] = sum_y basis[u][y] * tmp[y][v]
+        KERNELS.multiply(basis, tmp, k, out, k, n, k);
+    }
+}
@@ -4,4 +4,12 @@ public final class Hamming {
     public static int distance(long a, long b) {
         return Long.bitCount(a ^ b);
     }
+
+    /** Distance between two wide hashes of the same width, word by word. */
+    public static int distance(long[] a, long[] b) {
+        if (a.length != b.length) throw new IllegalArgumentException("Hash widths differ: " + a.length * 64 + " vs " + b.length * 64);
+        int d = 0;
+        for (int i = 0; i < a.length; i++) d += Long.bitCount(a[i] ^ b[i]);
+        return d;
+    }
 }
@@ -1,7 +1,45 @@
 package hash;
+import core.LumaGrid;
 import java.awt.image.BufferedImage;
 
 public interface Hasher {
-    long hash(BufferedImage img);
+    /** Side of the shared luma grid every hasher derives its input from. */
+    int GRID = 32;
+
+    /** Hashes a decoded image: builds the shared 32x32 luma grid, then {@link #hash(LumaGrid)}. */
+    default long hash(BufferedImage img) {
+        return hash(LumaGrid.of(img, GRID, GRID));
+    }
+
+    /**
+     * Hashes a preprocessed luma grid, so several hashers can share one decode and downscale.
+     * For hashers wider than 64 bits this is the first word of {@link #hashWide}.
+     */
+    long hash(LumaGrid grid);
+
+    /** Hash width: 64, or a multiple of 64 for hashers that override {@link #hashWide}. */
+    default int bits() { return 64; }
+
+    /** The full hash as {@code bits() / 64} words, in {@link WideHash} order. */
+    default long[] hashWide(LumaGrid grid) {
+        return new long[]{hash(grid)};
+    }
+
+    /**
+     * Hashes of the grid under all 8 EXIF orientations, in order 1..8, so element 0 is
+     * {@link #hash(LumaGrid)}. A rotated or mirrored copy of an image hashes to one of its
+     * variants. The default orients the small grid; hashers with a cheaper way override it.
+     * For wide hashers these are first words only.
+     */
+    default long[] dihedral(LumaGrid grid) {
+        long[] out = new long[8];
+        out[0] = hash(grid);
+        for (int o = 2; o <= 8; o++) out[o - 1] = hash(grid.orient(o));
+        return out;
+    }
+
     String name();
+
+    /** Bump whenever the output for the same input changes, so persisted hashes are invalidated. */
+    default int version() { return 1; }
 }
@@ -0,0 +1,62 @@
+package hash;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Resolves the {@code --algo} option to hasher instances. */
+public final class Hashers {
+
+    public static final List<String> NAMES = List.of("ahash", "dhash", "phash");
+    /** 256-bit variants, not part of {@code all}. */
+    public static final List<String> WIDE_NAMES = List.of("dhash16", "phash16");
+
+    private Hashers() {}
+
+    /**
+     * Single hasher by name (case-insensitive), also matching the column names hashers write;
+     * {@code dhashN}/{@code phashN} select an {@code N x N} grid or block. {@code null} if unknown.
+     */
+    public static Hasher byName(String name) {
+        String n = name.trim().toLowerCase();
+        return switch (n) {
+            case "ahash" -> new AHash();
+            case "dhash" -> new DHash();
+            case "phash" -> new PHashDct();
+            default -> sized(n);
+        };
+    }
+
+    private static Hasher sized(String n) {
+        try {
+            if (n.startsWith("dhash")) return new DHash(Integer.parseInt(n.substring(5)));
+            if (n.startsWith("phash")) return new PHashDct(Integer.parseInt(n.substring(5)));
+        } catch (IllegalArgumentException e) {
+            // not a number, or no such size
+        }
+        return null;
+    }
+
+    /**
+     * Parses a comma-separated list such as {@code ahash,phash}, or {@code all}.
+     * Duplicates are dropped, order is preserved.
+     *
+     * @throws IllegalArgumentException on an unknown or empty name
+     */
+    public static List<Hasher> parse(String spec) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String s : spec.split(",")) {
+            String n = s.trim().toLowerCase();
+            if (n.equals("all")) names.addAll(NAMES);
+            else names.add(n);
+        }
+        List<Hasher> out = new ArrayList<>();
+        for (String n : names) {
+            Hasher h = byName(n);
+            if (h == null) throw new IllegalArgumentException(n.isEmpty() ? spec : n);
+            out.add(h);
+        }
+        return out;
+    }
+}
@@ -1,83 +1,112 @@
 // java
 package hash;
 
-import core.Gray;
-import core.Resize;
-
-import java.awt.image.BufferedImage;
+import core.LumaGrid;
 
+/**
+ * DCT hash: one bit per coefficient of the top-left {@code block x block} corner of the 32x32
+ * DCT, set when it exceeds the mean of the AC coefficients. The default 8 gives the classic
+ * 64-bit pHash; 16 gives 256 bits ({@code pHash16}).
+ */
 public class PHashDct implements Hasher {
 
     private static final double EPS = 1e-9;
+    private static final int N = 32;
+    private static final Dct DCT = new Dct(N);
+
+    private final int b;
+
+    public PHashDct() { this(8); }
 
-    public long hash(BufferedImage img) {
-        // Preprocess: convert to grayscale and resize
-        img = Gray.toGray(img);
-        img = Resize.resize(img, 32, 32);
-
-        int N = 32;
-        double[][] vals = new double[N][N];
-        for (int y = 0; y < N; y++) {
-            for (int x = 0; x < N; x++) {
-                int rgb = img.getRGB(x, y);
-                int r = (rgb >> 16) & 0xff;
-                int g = (rgb >> 8) & 0xff;
-                int b = rgb & 0xff;
-                double gray = (0.299 * r + 0.587 * g + 0.114 * b) / 255.0;
-                vals[y][x] = gray;
+    /** @param block low-frequency block side, up to 32; {@code block * block} must be a multiple of 64 */
+    public PHashDct(int block) {
+        if (block < 8 || block > N || block * block % 64 != 0)
+            throw new IllegalArgumentException("pHash block must be 8..32 and give a multiple of 64 bits: " + block);
+        this.b = block;
+    }
+
+    public long hash(LumaGrid grid) {
+        return hashWide(grid)[0];
+    }
+
+    @Override
+    public long[] hashWide(LumaGrid grid) {
+        return bits(lowBlock(grid));
+    }
+
+    /**
+     * All 8 variants from one DCT. Flipping the input negates the odd frequencies along that
+     * axis and transposing it transposes the coefficients, so each orientation is a signed
+     * permutation of the same block, thresholded against its own AC mean.
+     */
+    @Override
+    public long[] dihedral(LumaGrid grid) {
+        if (b != 8) return Hasher.super.dihedral(grid);
+        double[] low = lowBlock(grid);
+        double[] t = new double[low.length];
+        long[] out = new long[8];
+        for (int o = 1; o <= 8; o++) {
+            boolean swap = o >= 5;
+            for (int u = 0; u < b; u++) {
+                for (int v = 0; v < b; v++) {
+                    double c = swap ? low[v * b + u] : low[u * b + v];
+                    t[u * b + v] = negated(o, u, v) ? -c : c;
+                }
             }
+            out[o - 1] = bits(t)[0];
         }
+        return out;
+    }
 
-        double[][] dct = dct(vals);
+    // Sign of coefficient (u = vertical, v = horizontal frequency) under orientation o, as in LumaGrid.orient
+    private static boolean negated(int o, int u, int v) {
+        int parity = switch (o) {
+            case 2, 6 -> v;
+            case 3, 7 -> u + v;
+            case 4, 8 -> u;
+            default -> 0;
+        };
+        return (parity & 1) != 0;
+    }
 
-        // Top-left 8x8 block with numeric stabilization
-        double[] low = new double[64];
-        int idx = 0;
-        for (int y = 0; y < 8; y++) {
-            for (int x = 0; x < 8; x++) {
-                double v = dct[y][x];
-                if (Math.abs(v) < EPS) v = 0.0; // zero-out tiny noise
-                low[idx++] = v;
-            }
+    private double[] lowBlock(LumaGrid grid) {
+        int[] px = grid.resample(N, N);
+
+        double[] vals = new double[N * N];
+        for (int i = 0; i < vals.length; i++) vals[i] = px[i] / 255.0;
+
+        // Only the top-left block is used, so skip the other coefficients
+        double[] low = new double[b * b];
+        DCT.forward(vals, low, b);
+
+        // Numeric stabilization
+        for (int i = 0; i < low.length; i++) {
+            if (Math.abs(low[i]) < EPS) low[i] = 0.0; // zero-out tiny noise
         }
+        return low;
+    }
 
+    private static long[] bits(double[] low) {
+        int bits = low.length;
         // Mean of AC coefficients (skip DC), ignore near-zero values
-        double mean = java.util.Arrays.stream(low, 1, 64)
+        double mean = java.util.Arrays.stream(low, 1, bits)
                 .filter(v -> Math.abs(v) >= EPS)
                 .average()
                 .orElse(0.0);
 
-        long bits = 0L;
-        for (int i = 0; i < 64; i++) {
+        long[] words = new long[bits / 64];
+        for (int i = 0; i < bits; i++) {
             if (low[i] - mean > EPS) {
-                bits |= (1L << i);
+                words[i >>> 6] |= (1L << i);
             }
         }
-        return bits;
+        return words;
     }
 
-    private static double[][] dct(double[][] f) {
-        int N = f.length;
-        double[][] F = new double[N][N];
-        for (int u = 0; u < N; u++) {
-            for (int v = 0; v < N; v++) {
-                double sum = 0.0;
-                for (int x = 0; x < N; x++) {
-                    for (int y = 0; y < N; y++) {
-                        sum += f[x][y]
-                                * Math.cos(((2 * x + 1) * u * Math.PI) / (2 * N))
-                                * Math.cos(((2 * y + 1) * v * Math.PI) / (2 * N));
-                    }
-                }
-                double cu = (u == 0) ? Math.sqrt(1.0 / N) : Math.sqrt(2.0 / N);
-                double cv = (v == 0) ? Math.sqrt(1.0 / N) : Math.sqrt(2.0 / N);
-                F[u][v] = cu * cv * sum;
-            }
-        }
-        return F;
-    }
+    @Override
+    public int bits() { return b * b; }
 
     public String name() {
-        return "pHash";
+        return b == 8 ? "pHash" : "pHash" + b;
     }
 }
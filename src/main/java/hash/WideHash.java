@@ -0,0 +1,50 @@
+package hash;
+
+import java.util.Arrays;
+
+/**
+ * A hash wider than 64 bits, as {@code bits / 64} words with the first bit in the lowest
+ * bit of word 0. Written as fixed-width hex, 16 digits per word, word 0 first. The array is
+ * not copied; treat it as immutable.
+ */
+public record WideHash(long[] words) {
+
+    public WideHash {
+        if (words.length == 0) throw new IllegalArgumentException("Empty hash");
+    }
+
+    public int bits() { return words.length * 64; }
+
+    public int distance(WideHash other) {
+        return Hamming.distance(words, other.words);
+    }
+
+    /** Parses the {@link #toString()} form. */
+    public static WideHash parse(String hex) {
+        int n = hex.length() / 16;
+        if (n == 0 || hex.length() % 16 != 0) throw new NumberFormatException("Not a wide hash: " + hex);
+        long[] words = new long[n];
+        for (int i = 0; i < n; i++) words[i] = Long.parseUnsignedLong(hex, i * 16, i * 16 + 16, 16);
+        return new WideHash(words);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof WideHash w && Arrays.equals(words, w.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(words.length * 16);
+        for (long w : words) {
+            String s = Long.toHexString(w);
+            sb.repeat('0', 16 - s.length()).append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package index;
+
+import hash.Hamming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BK-tree over 64-bit hashes backed by primitive arrays.
+ *
+ * Nodes are integers: {@code keys[n]} holds the hash, ids hang off each node as an int
+ * linked list into a shared {@code String[]} table. While adding, children are kept as
+ * first-child/next-sibling lists. Before the first query after a change, the child lists
+ * are packed into one contiguous array per node, sorted by edge distance (CSR layout), so a
+ * query visits only the slice {@code [dist - r, dist + r]} found by binary search.
+ *
+ * Same results as {@link BKTreeIndex}, at about 30 bytes per node plus 8-12 per id instead
+ * of a HashMap, an ArrayList and boxed Integers per node. See {@code bench.IndexBenchmark}.
+ */
+public class FlatBKTreeIndex implements Index {
+
+    private static final int NONE = -1;
+
+    // nodes
+    private long[] keys = new long[16];
+    private int[] firstChild = new int[16];
+    private int[] nextSibling = new int[16];
+    private byte[] edge = new byte[16];      // distance to parent (1..64)
+    private int[] firstId = new int[16];
+    private int nodes;
+
+    // ids
+    private String[] ids = new String[16];
+    private int[] nextId = new int[16];
+    private int idCount;
+
+    // packed children, rebuilt lazily after adds
+    private int[] childStart;                 // nodes + 1 entries
+    private int[] childNode;
+    private byte[] childEdge;
+    private boolean dirty = true;
+
+    @Override
+    public void add(long hash, String id) {
+        dirty = true;
+        if (nodes == 0) {
+            newNode(hash, id, 0);
+            return;
+        }
+        int cur = 0;
+        while (true) {
+            int d = Hamming.distance(hash, keys[cur]);
+            if (d == 0) {
+                addId(cur, id);
+                return;
+            }
+            int c = firstChild[cur];
+            while (c != NONE && edge[c] != d) c = nextSibling[c];
+            if (c == NONE) {
+                int n = newNode(hash, id, d);
+                nextSibling[n] = firstChild[cur];
+                firstChild[cur] = n;
+                return;
+            }
+            cur = c;
+        }
+    }
+
+    @Override
+    public List<String> withinHamming(long hash, int radius) {
+        List<String> out = new ArrayList<>();
+        if (nodes == 0) return out;
+        if (dirty) pack();
+        int[] stack = new int[64];
+        int sp = 0;
+        stack[sp++] = 0;
+        while (sp > 0) {
+            int n = stack[--sp];
+            int dist = Hamming.distance(hash, keys[n]);
+            if (dist <= radius) {
+                for (int i = firstId[n]; i != NONE; i = nextId[i]) out.add(ids[i]);
+            }
+            int lo = dist - radius, hi = dist + radius;
+            int end = childStart[n + 1];
+            for (int i = lowerBound(childStart[n], end, lo); i < end && childEdge[i] <= hi; i++) {
+                if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+                stack[sp++] = childNode[i];
+            }
+        }
+        return out;
+    }
+
+    /** Number of distinct hashes (tree nodes). */
+    public int nodeCount() { return nodes; }
+
+    /** Number of ids added. */
+    public int size() { return idCount; }
+
+    private int newNode(long hash, String id, int d) {
+        if (nodes == keys.length) {
+            int cap = nodes + (nodes >> 1);
+            keys = Arrays.copyOf(keys, cap);
+            firstChild = Arrays.copyOf(firstChild, cap);
+            nextSibling = Arrays.copyOf(nextSibling, cap);
+            edge = Arrays.copyOf(edge, cap);
+            firstId = Arrays.copyOf(firstId, cap);
+        }
+        int n = nodes++;
+        keys[n] = hash;
+        firstChild[n] = NONE;
+        nextSibling[n] = NONE;
+        edge[n] = (byte) d;
+        firstId[n] = NONE;
+        addId(n, id);
+        return n;
+    }
+
+    // Ids are prepended; query order within one node is not significant
+    private void addId(int node, String id) {
+        if (idCount == ids.length) {
+            int cap = idCount + (idCount >> 1);
+            ids = Arrays.copyOf(ids, cap);
+            nextId = Arrays.copyOf(nextId, cap);
+        }
+        ids[idCount] = id;
+        nextId[idCount] = firstId[node];
+        firstId[node] = idCount++;
+    }
+
+    private void pack() {
+        childStart = new int[nodes + 1];
+        childNode = new int[Math.max(0, nodes - 1)];
+        childEdge = new byte[childNode.length];
+        int[] byEdge = new int[65];
+        int k = 0;
+        for (int n = 0; n < nodes; n++) {
+            childStart[n] = k;
+            if (firstChild[n] == NONE) continue;
+            // counting sort of at most 64 children by edge distance
+            Arrays.fill(byEdge, NONE);
+            for (int c = firstChild[n]; c != NONE; c = nextSibling[c]) byEdge[edge[c]] = c;
+            for (int d = 1; d <= 64; d++) {
+                if (byEdge[d] != NONE) {
+                    childNode[k] = byEdge[d];
+                    childEdge[k++] = (byte) d;
+                }
+            }
+        }
+        childStart[nodes] = k;
+        dirty = false;
+    }
+
+    private int lowerBound(int from, int to, int value) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (childEdge[mid] < value) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+}
@@ -1,7 +1,24 @@
 package index;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public interface Index {
     void add(long hash, String id);
     List<String> withinHamming(long hash, int radius);
+
+    /**
+     * Ids within {@code radius} of any of {@code hashes}, each once, in order of first match;
+     * used to query all dihedral variants of an image at once. Repeated query hashes are
+     * searched once.
+     */
+    default List<String> withinHammingAny(long[] hashes, int radius) {
+        Set<String> out = new LinkedHashSet<>();
+        for (int i = 0; i < hashes.length; i++) {
+            boolean seen = false;
+            for (int j = 0; j < i && !seen; j++) seen = hashes[j] == hashes[i];
+            if (!seen) out.addAll(withinHamming(hashes[i], radius));
+        }
+        return List.copyOf(out);
+    }
 }
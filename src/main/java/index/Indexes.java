@@ -0,0 +1,24 @@
+package index;
+
+import java.util.List;
+
+/** Resolves the {@code --index} option to an {@link Index} implementation. */
+public final class Indexes {
+
+    public static final List<String> NAMES = List.of("bktree", "flat", "mih");
+
+    private Indexes() {}
+
+    /**
+     * @param expectedSize number of entries that will be added, used to tune MIH
+     * @return a new empty index, or {@code null} if the name is unknown
+     */
+    public static Index create(String name, int expectedSize) {
+        return switch (name.trim().toLowerCase()) {
+            case "bktree" -> new BKTreeIndex();
+            case "flat" -> new FlatBKTreeIndex();
+            case "mih" -> MultiIndexHashIndex.forExpectedSize(expectedSize);
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,147 @@
+package index;
+
+import hash.Hamming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-index hashing (Norouzi et al.) for exact Hamming range search.
+ *
+ * The 64-bit hash is cut into {@code m} contiguous substrings, each with its own table.
+ * If two hashes are within {@code r}, at least one substring pair is within
+ * {@code r / m} (pigeonhole). A query therefore enumerates, per table, every substring value
+ * within {@code r / m} of the query's substring, collects the entries stored under those
+ * values and verifies each candidate with a full Hamming check. Results are exactly those
+ * of {@link BKTreeIndex}; when the enumeration would cost more than scanning, the query
+ * falls back to a linear scan.
+ *
+ * Tables are sorted arrays of {@code (substring << 32 | entry)} built lazily before the
+ * first query after an add.
+ */
+public class MultiIndexHashIndex implements Index {
+
+    private final int m;
+    private final int[] shift;   // low bit of substring t
+    private final int[] width;   // bits in substring t (<= 32)
+
+    private long[] hashes = new long[16];
+    private String[] ids = new String[16];
+    private int size;
+
+    private long[][] tables;     // per substring: sorted (sub << 32 | entry)
+    private int[] stamp;         // last query that reported entry i
+    private int query;
+    private boolean dirty = true;
+
+    /** Four 16-bit substrings: a good default up to a few million entries. */
+    public MultiIndexHashIndex() {
+        this(4);
+    }
+
+    /** @param m number of substrings, 2..64 */
+    public MultiIndexHashIndex(int m) {
+        if (m < 2 || m > 64) throw new IllegalArgumentException("Substring count must be 2..64: " + m);
+        this.m = m;
+        this.shift = new int[m];
+        this.width = new int[m];
+        for (int t = 0; t < m; t++) {
+            shift[t] = t * 64 / m;
+            width[t] = (t + 1) * 64 / m - shift[t];
+        }
+    }
+
+    /** Picks {@code m ~ 64 / log2(n)} so each table holds about one entry per bucket. */
+    public static MultiIndexHashIndex forExpectedSize(int n) {
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(2, n) - 1);
+        return new MultiIndexHashIndex(Math.max(2, Math.min(8, Math.round(64f / Math.max(bits, 8)))));
+    }
+
+    public int substrings() { return m; }
+
+    @Override
+    public void add(long hash, String id) {
+        if (size == hashes.length) {
+            int cap = size + (size >> 1);
+            hashes = Arrays.copyOf(hashes, cap);
+            ids = Arrays.copyOf(ids, cap);
+        }
+        hashes[size] = hash;
+        ids[size++] = id;
+        dirty = true;
+    }
+
+    @Override
+    public List<String> withinHamming(long hash, int radius) {
+        List<String> out = new ArrayList<>();
+        if (size == 0 || radius < 0) return out;
+        if (dirty) build();
+
+        int s = radius / m;
+        if (probeCost(s) >= size) {
+            for (int i = 0; i < size; i++) if (Hamming.distance(hash, hashes[i]) <= radius) out.add(ids[i]);
+            return out;
+        }
+        if (++query == 0) { // stamp wrap-around
+            Arrays.fill(stamp, 0);
+            query = 1;
+        }
+        for (int t = 0; t < m; t++) {
+            int sub = substring(hash, t);
+            probe(t, sub, 0, s, hash, radius, out);
+        }
+        return out;
+    }
+
+    // All values within s bit flips of sub, flipping bits at positions >= from (each set visited once)
+    private void probe(int t, int sub, int from, int s, long hash, int radius, List<String> out) {
+        lookup(t, sub, hash, radius, out);
+        if (s == 0) return;
+        for (int b = from; b < width[t]; b++) probe(t, sub ^ (1 << b), b + 1, s - 1, hash, radius, out);
+    }
+
+    private void lookup(int t, int sub, long hash, int radius, List<String> out) {
+        long[] table = tables[t];
+        long key = (long) sub << 32;
+        int i = Arrays.binarySearch(table, key);
+        if (i < 0) i = -i - 1;
+        for (; i < table.length && (table[i] >>> 32) == (sub & 0xffffffffL); i++) {
+            int e = (int) table[i];
+            if (stamp[e] == query) continue;
+            stamp[e] = query;
+            if (Hamming.distance(hash, hashes[e]) <= radius) out.add(ids[e]);
+        }
+    }
+
+    private int substring(long hash, int t) {
+        return (int) ((hash >>> shift[t]) & ((1L << width[t]) - 1));
+    }
+
+    // Table lookups for a search radius of s per substring, saturating at Integer.MAX_VALUE
+    private long probeCost(int s) {
+        long total = 0;
+        for (int t = 0; t < m; t++) {
+            long c = 1, sum = 1;
+            for (int k = 1; k <= Math.min(s, width[t]); k++) {
+                c = c * (width[t] - k + 1) / k;
+                sum += c;
+            }
+            total += sum;
+            if (total > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        }
+        return total;
+    }
+
+    private void build() {
+        tables = new long[m][size];
+        for (int t = 0; t < m; t++) {
+            long[] table = tables[t];
+            for (int i = 0; i < size; i++) table[i] = ((long) substring(hashes[i], t) << 32) | i;
+            Arrays.sort(table);
+        }
+        stamp = new int[size];
+        query = 0;
+        dirty = false;
+    }
+}
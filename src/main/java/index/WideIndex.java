@@ -0,0 +1,11 @@
+package index;
+
+import hash.WideHash;
+
+import java.util.List;
+
+/** {@link Index} over {@link WideHash} keys of one fixed width. */
+public interface WideIndex {
+    void add(WideHash hash, String id);
+    List<String> withinHamming(WideHash hash, int radius);
+}
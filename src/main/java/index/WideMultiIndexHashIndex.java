@@ -0,0 +1,134 @@
+package index;
+
+import hash.WideHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link MultiIndexHashIndex} for wide hashes.
+ *
+ * Each hash is cut into 16-bit substrings, four per word, so a 256-bit hash gets 16 tables.
+ * By the same pigeonhole argument, a hash within {@code r} matches the query within
+ * {@code r / m} bits on at least one substring. For the radii useful at 256 bits (up to
+ * about 30) a query therefore probes each table at one or a few values. Hashes are stored
+ * flat, {@code words} longs per entry, and candidates are verified with the full wide
+ * distance. Falls back to a linear scan when probing would cost more.
+ */
+public class WideMultiIndexHashIndex implements WideIndex {
+
+    private static final int SUB_BITS = 16;
+    private static final int PER_WORD = 64 / SUB_BITS;
+
+    private final int words;
+    private final int m;
+
+    private long[] hashes;
+    private String[] ids = new String[16];
+    private int size;
+
+    private long[][] tables;     // per substring: sorted (sub << 32 | entry)
+    private int[] stamp;
+    private int query;
+    private boolean dirty = true;
+
+    /** @param bits hash width, a positive multiple of 64 */
+    public WideMultiIndexHashIndex(int bits) {
+        if (bits <= 0 || bits % 64 != 0) throw new IllegalArgumentException("Hash width must be a multiple of 64: " + bits);
+        this.words = bits / 64;
+        this.m = words * PER_WORD;
+        this.hashes = new long[16 * words];
+    }
+
+    public int bits() { return words * 64; }
+
+    @Override
+    public void add(WideHash hash, String id) {
+        check(hash);
+        if (size == ids.length) {
+            int cap = size + (size >> 1);
+            hashes = Arrays.copyOf(hashes, cap * words);
+            ids = Arrays.copyOf(ids, cap);
+        }
+        System.arraycopy(hash.words(), 0, hashes, size * words, words);
+        ids[size++] = id;
+        dirty = true;
+    }
+
+    @Override
+    public List<String> withinHamming(WideHash hash, int radius) {
+        check(hash);
+        List<String> out = new ArrayList<>();
+        if (size == 0 || radius < 0) return out;
+        if (dirty) build();
+
+        long[] q = hash.words();
+        int s = radius / m;
+        if (probeCost(s) >= size) {
+            for (int i = 0; i < size; i++) if (distance(q, i) <= radius) out.add(ids[i]);
+            return out;
+        }
+        if (++query == 0) {
+            Arrays.fill(stamp, 0);
+            query = 1;
+        }
+        for (int t = 0; t < m; t++) probe(t, substring(q, 0, t), 0, s, q, radius, out);
+        return out;
+    }
+
+    private void probe(int t, int sub, int from, int s, long[] q, int radius, List<String> out) {
+        lookup(t, sub, q, radius, out);
+        if (s == 0) return;
+        for (int b = from; b < SUB_BITS; b++) probe(t, sub ^ (1 << b), b + 1, s - 1, q, radius, out);
+    }
+
+    private void lookup(int t, int sub, long[] q, int radius, List<String> out) {
+        long[] table = tables[t];
+        int i = Arrays.binarySearch(table, (long) sub << 32);
+        if (i < 0) i = -i - 1;
+        for (; i < table.length && (table[i] >>> 32) == sub; i++) {
+            int e = (int) table[i];
+            if (stamp[e] == query) continue;
+            stamp[e] = query;
+            if (distance(q, e) <= radius) out.add(ids[e]);
+        }
+    }
+
+    private int distance(long[] q, int e) {
+        int d = 0, o = e * words;
+        for (int w = 0; w < words; w++) d += Long.bitCount(q[w] ^ hashes[o + w]);
+        return d;
+    }
+
+    private static int substring(long[] h, int off, int t) {
+        return (int) ((h[off + t / PER_WORD] >>> (t % PER_WORD * SUB_BITS)) & 0xffff);
+    }
+
+    // Table lookups for a search radius of s per substring, saturating at Integer.MAX_VALUE
+    private long probeCost(int s) {
+        long c = 1, sum = 1;
+        for (int k = 1; k <= Math.min(s, SUB_BITS); k++) {
+            c = c * (SUB_BITS - k + 1) / k;
+            sum += c;
+        }
+        return Math.min((long) Integer.MAX_VALUE, sum * m);
+    }
+
+    private void build() {
+        tables = new long[m][size];
+        for (int t = 0; t < m; t++) {
+            long[] table = tables[t];
+            for (int i = 0; i < size; i++) table[i] = ((long) substring(hashes, i * words, t) << 32) | i;
+            Arrays.sort(table);
+        }
+        stamp = new int[size];
+        query = 0;
+        dirty = false;
+    }
+
+    private void check(WideHash hash) {
+        if (hash.words().length != words)
+            throw new IllegalArgumentException("Expected a " + bits() + "-bit hash, got " + hash.bits());
+    }
+}
@@ -0,0 +1,94 @@
+package core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Kernels} on the Vector API, at the platform's preferred width.
+ * Only instantiated by {@link Kernels#ACTIVE} when the incubator module is present.
+ */
+final class VectorKernels implements Kernels {
+
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> L = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    // Lanes of at most 255 each stay below 2^31 for this many iterations
+    private static final int SUM_CHUNK = 1 << 16;
+
+    @Override
+    public void lumaRgb(int[] rgb, int off, int[] out, int n) {
+        int i = 0;
+        for (int bound = I.loopBound(n); i < bound; i += I.length()) {
+            luma(IntVector.fromArray(I, rgb, off + i)).intoArray(out, i);
+        }
+        for (; i < n; i++) out[i] = Luma.ofRgb(rgb[off + i]);
+    }
+
+    @Override
+    public void lumaArgb(int[] argb, int off, int[] out, int n) {
+        int i = 0;
+        for (int bound = I.loopBound(n); i < bound; i += I.length()) {
+            IntVector p = IntVector.fromArray(I, argb, off + i);
+            IntVector a = p.lanewise(VectorOperators.LSHR, 24);
+            // (l * a + 127) / 255 via multiply-shift, exact for the 0..65152 range; equals l when a == 255
+            luma(p).mul(a).add(127).mul(0x8081).lanewise(VectorOperators.LSHR, 23).intoArray(out, i);
+        }
+        for (; i < n; i++) out[i] = Luma.ofArgb(argb[off + i]);
+    }
+
+    private static IntVector luma(IntVector p) {
+        IntVector r = p.lanewise(VectorOperators.LSHR, 16).and(0xff);
+        IntVector g = p.lanewise(VectorOperators.LSHR, 8).and(0xff);
+        IntVector b = p.and(0xff);
+        return r.mul(77).add(g.mul(150)).add(b.mul(29)).add(128).lanewise(VectorOperators.LSHR, 8);
+    }
+
+    @Override
+    public long sum(int[] a, int from, int to) {
+        long s = 0;
+        int i = from;
+        while (to - i >= I.length()) {
+            int end = i + Math.min(to - i, SUM_CHUNK) / I.length() * I.length();
+            IntVector acc = IntVector.zero(I);
+            for (; i < end; i += I.length()) acc = acc.add(IntVector.fromArray(I, a, i));
+            s += acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < to; i++) s += a[i];
+        return s;
+    }
+
+    @Override
+    public void addScaled(long[] dst, int off, long[] src, long scale, int n) {
+        int i = 0;
+        for (int bound = L.loopBound(n); i < bound; i += L.length()) {
+            LongVector.fromArray(L, src, i).mul(scale)
+                    .add(LongVector.fromArray(L, dst, off + i))
+                    .intoArray(dst, off + i);
+        }
+        for (; i < n; i++) dst[off + i] += scale * src[i];
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, int bStride, double[] out, int rows, int inner, int cols) {
+        // One vector of adjacent outputs per step: each lane sums its own terms in order of t
+        for (int i = 0; i < rows; i++) {
+            int ai = i * inner;
+            for (int j = 0; j < cols; j += D.length()) {
+                VectorMask<Double> m = D.indexInRange(j, cols);
+                DoubleVector acc = DoubleVector.zero(D);
+                for (int t = 0; t < inner; t++) {
+                    DoubleVector bt = DoubleVector.fromArray(D, b, t * bStride + j, m);
+                    acc = acc.add(bt.mul(a[ai + t]));
+                }
+                acc.intoArray(out, i * cols + j, m);
+            }
+        }
+    }
+
+    @Override
+    public String name() { return "simd-" + D.vectorBitSize(); }
+}
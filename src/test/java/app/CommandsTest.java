@@ -109,6 +109,204 @@ class CommandsTest {
         assertEquals(CommandLine.ExitCode.USAGE, exitCode, "Hash command should exit with USAGE for non-existent root");
     }
 
+    @Test
+    void hashCommand_MultipleAlgorithmsWriteOneColumnEach() throws Exception {
+        createImageWithPixels("img1.png", 40, 30);
+        createImageWithPixels("img2.png", 50, 50);
+
+        Commands.Hash hashCommand = new Commands.Hash();
+        hashCommand.root = rootDir;
+        hashCommand.out = tempDir.resolve("index.csv");
+        hashCommand.algo = "all";
+
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+
+        List<String> lines = Files.readAllLines(hashCommand.out);
+        assertEquals("path,aHash,dHash,pHash", lines.get(0), "Multi-hash index should start with a header");
+        assertEquals(3, lines.size(), "Header plus one row per image");
+        assertTrue(lines.stream().skip(1).allMatch(l -> l.split(",").length == 4), "Each row should have path + 3 hashes");
+    }
+
+    @Test
+    void hashCommand_EmbeddedThumbnailsAddSourceColumn() throws Exception {
+        createImageWithPixels("img1.png", 40, 30);
+
+        Commands.Hash hashCommand = new Commands.Hash();
+        hashCommand.root = rootDir;
+        hashCommand.out = tempDir.resolve("index.csv");
+        hashCommand.algo = "phash";
+        hashCommand.useThumbnails = true;
+
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+
+        List<String> lines = Files.readAllLines(hashCommand.out);
+        assertEquals("path,pHash,source", lines.get(0));
+        assertTrue(lines.get(1).endsWith(",image"), "PNGs have no embedded thumbnail: " + lines.get(1));
+        assertEquals(1, HashCsv.read(hashCommand.out, null).size(), "Hash column still readable");
+    }
+
+    @Test
+    void hashCommand_SniffPicksFilesByContent() throws Exception {
+        createImage("img1.png", PNG_DATA);
+        createImage("renamed.dat", PNG_DATA_WHITE);
+        createImage("broken.jpg", "not an image".getBytes());
+
+        Commands.Hash hashCommand = new Commands.Hash();
+        hashCommand.root = rootDir;
+        hashCommand.out = tempDir.resolve("index.csv");
+        hashCommand.algo = "phash";
+        hashCommand.sniff = true;
+
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+
+        List<String> lines = Files.readAllLines(hashCommand.out);
+        assertEquals(2, lines.size());
+        assertTrue(lines.stream().anyMatch(s -> s.contains("renamed.dat")), "Extension does not matter when sniffing");
+        assertTrue(lines.stream().noneMatch(s -> s.contains("broken.jpg")), "Non-image content is dropped");
+    }
+
+    @Test
+    void hashCommand_ExactDuplicatesAddGroupColumn() throws Exception {
+        createImage("img1.png", PNG_DATA);
+        createImage("sub/copy.png", PNG_DATA);
+        createImage("white.png", PNG_DATA_WHITE);
+
+        Commands.Hash hashCommand = new Commands.Hash();
+        hashCommand.root = rootDir;
+        hashCommand.out = tempDir.resolve("index.csv");
+        hashCommand.algo = "phash";
+        hashCommand.exactDuplicates = true;
+
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+
+        List<String> lines = Files.readAllLines(hashCommand.out);
+        assertEquals("path,pHash,exact", lines.get(0));
+        assertTrue(lines.stream().anyMatch(l -> l.contains("img1.png") && l.endsWith(",1")), lines.toString());
+        assertTrue(lines.stream().anyMatch(l -> l.contains("copy.png") && l.endsWith(",1")), lines.toString());
+        assertTrue(lines.stream().anyMatch(l -> l.contains("white.png") && l.endsWith(",0")), lines.toString());
+        assertEquals(3, HashCsv.read(hashCommand.out, null).size(), "Hash column still readable");
+    }
+
+    @Test
+    void clusterCommand_SelectsColumnOfMultiHashIndex() throws Exception {
+        Path indexCsv = tempDir.resolve("index.csv");
+        Files.write(indexCsv, List.of(
+                "path,aHash,pHash",
+                "a.png,0," + Long.toUnsignedString(-1L),
+                "b.png,0,0"
+        ));
+
+        Commands.Cluster clusterCommand = new Commands.Cluster();
+        clusterCommand.indexCsv = indexCsv;
+        clusterCommand.out = tempDir.resolve("clusters.csv");
+        clusterCommand.radius = 0;
+
+        // default column is pHash: the two files differ
+        assertEquals(CommandLine.ExitCode.OK, clusterCommand.call());
+        assertTrue(Files.readAllLines(clusterCommand.out).isEmpty());
+
+        // on aHash they are identical
+        clusterCommand.algo = "ahash";
+        assertEquals(CommandLine.ExitCode.OK, clusterCommand.call());
+        assertEquals(2, Files.readAllLines(clusterCommand.out).size());
+
+        clusterCommand.algo = "dhash";
+        assertEquals(CommandLine.ExitCode.USAGE, clusterCommand.call(), "Missing column should be a usage error");
+    }
+
+    @Test
+    void clusterCommand_WideColumnUsesWideIndex() throws Exception {
+        createImageWithPixels("a.png", 40, 30);
+        createImageWithPixels("b.png", 80, 60);
+        BufferedImage gradient = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 64; y++) for (int x = 0; x < 64; x++) gradient.setRGB(x, y, (255 - 4 * x) * 0x010101);
+        ImageIO.write(gradient, "png", rootDir.resolve("c.png").toFile());
+
+        Commands.Hash hashCommand = new Commands.Hash();
+        hashCommand.root = rootDir;
+        hashCommand.out = tempDir.resolve("index.csv");
+        hashCommand.algo = "phash,dhash16";
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+
+        List<String> lines = Files.readAllLines(hashCommand.out);
+        assertEquals("path,pHash,dHash16", lines.get(0));
+        assertEquals(64, lines.get(1).substring(lines.get(1).lastIndexOf(',') + 1).length(), "256 bits as hex");
+
+        Commands.Cluster clusterCommand = new Commands.Cluster();
+        clusterCommand.indexCsv = hashCommand.out;
+        clusterCommand.out = tempDir.resolve("clusters.csv");
+        clusterCommand.algo = "dhash16";
+        clusterCommand.radius = 0;
+        assertEquals(CommandLine.ExitCode.OK, clusterCommand.call());
+
+        List<String> rows = Files.readAllLines(clusterCommand.out);
+        assertEquals(2, rows.size(), "The two black images form the only cluster, the gradient differs in every bit: " + rows);
+        assertTrue(rows.stream().noneMatch(r -> r.endsWith("c.png")));
+    }
+
+    @Test
+    void clusterCommand_DihedralMatchesRotatedCopies() throws Exception {
+        BufferedImage img = new BufferedImage(60, 40, BufferedImage.TYPE_INT_RGB);
+        java.util.Random rnd = new java.util.Random(9);
+        for (int y = 0; y < 40; y++) for (int x = 0; x < 60; x++) img.setRGB(x, y, rnd.nextInt(0x1000000));
+        BufferedImage mirrored = new BufferedImage(60, 40, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 40; y++) for (int x = 0; x < 60; x++) mirrored.setRGB(59 - x, y, img.getRGB(x, y));
+        ImageIO.write(img, "png", rootDir.resolve("original.png").toFile());
+        ImageIO.write(mirrored, "png", rootDir.resolve("mirrored.png").toFile());
+
+        Commands.Hash hashCommand = new Commands.Hash();
+        hashCommand.root = rootDir;
+        hashCommand.out = tempDir.resolve("index.csv");
+        hashCommand.algo = "phash";
+        hashCommand.dihedral = true;
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+        assertEquals("path,pHash,pHash-d8", Files.readAllLines(hashCommand.out).get(0));
+
+        Commands.Cluster clusterCommand = new Commands.Cluster();
+        clusterCommand.indexCsv = hashCommand.out;
+        clusterCommand.out = tempDir.resolve("clusters.csv");
+        clusterCommand.radius = 0;
+        assertEquals(CommandLine.ExitCode.OK, clusterCommand.call());
+        assertTrue(Files.readAllLines(clusterCommand.out).isEmpty(), "Plain hashes differ");
+
+        clusterCommand.dihedral = true;
+        assertEquals(CommandLine.ExitCode.OK, clusterCommand.call());
+        assertEquals(2, Files.readAllLines(clusterCommand.out).size(), "The mirror image is one of the variants");
+
+        hashCommand.dihedral = false;
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+        assertEquals(CommandLine.ExitCode.USAGE, clusterCommand.call(), "Index without variants");
+    }
+
+    @Test
+    void clusterCommand_CascadeVerifiesCandidates() throws Exception {
+        createImageWithPixels("a.png", 40, 30);
+        createImageWithPixels("b.png", 80, 60);
+        createImage("white.png", PNG_DATA_WHITE);
+
+        Commands.Hash hashCommand = new Commands.Hash();
+        hashCommand.root = rootDir;
+        hashCommand.out = tempDir.resolve("index.csv");
+        hashCommand.algo = "all";
+        assertEquals(CommandLine.ExitCode.OK, hashCommand.call());
+
+        Commands.Cluster clusterCommand = new Commands.Cluster();
+        clusterCommand.indexCsv = hashCommand.out;
+        clusterCommand.out = tempDir.resolve("clusters.csv");
+        clusterCommand.candidates = "dhash";
+        clusterCommand.candidateRadius = 64;
+        clusterCommand.radius = 0;
+        assertEquals(CommandLine.ExitCode.OK, clusterCommand.call());
+
+        // Every pair is a candidate at radius 64, but pHash confirms only the two black images
+        List<String> rows = Files.readAllLines(clusterCommand.out);
+        assertEquals(2, rows.size(), rows.toString());
+        assertTrue(rows.stream().noneMatch(r -> r.endsWith("white.png")));
+
+        clusterCommand.candidates = "nope";
+        assertEquals(CommandLine.ExitCode.USAGE, clusterCommand.call());
+    }
+
     @Test
     void clusterCommand_Success() throws Exception {
         Path indexCsv = tempDir.resolve("index.csv");
@@ -143,6 +341,36 @@ class CommandsTest {
         assertTrue(clusterLines.stream().anyMatch(line -> line.endsWith("img2.png")), "Cluster should contain img2.png");
     }
 
+    @Test
+    void clusterCommand_IndexImplementationsAgree() throws Exception {
+        Path indexCsv = tempDir.resolve("index.csv");
+        Files.write(indexCsv, List.of(
+                "a.png,0",
+                "b.png,3",          // distance 2 from a
+                "c.png,15",         // distance 2 from b, chains to a
+                "d.png," + Long.toUnsignedString(-1L)
+        ));
+
+        for (String type : List.of("bktree", "flat", "mih")) {
+            Commands.Cluster clusterCommand = new Commands.Cluster();
+            clusterCommand.indexCsv = indexCsv;
+            clusterCommand.out = tempDir.resolve("clusters-" + type + ".csv");
+            clusterCommand.radius = 2;
+            clusterCommand.indexType = type;
+
+            assertEquals(CommandLine.ExitCode.OK, clusterCommand.call(), type);
+            List<String> rows = Files.readAllLines(clusterCommand.out);
+            assertEquals(3, rows.size(), type + ": a, b and c form one cluster");
+            assertTrue(rows.stream().noneMatch(r -> r.endsWith("d.png")), type);
+        }
+
+        Commands.Cluster bad = new Commands.Cluster();
+        bad.indexCsv = indexCsv;
+        bad.out = tempDir.resolve("clusters.csv");
+        bad.indexType = "quadtree";
+        assertEquals(CommandLine.ExitCode.USAGE, bad.call());
+    }
+
     @Test
     void clusterCommand_IndexNotFound() {
         Commands.Cluster clusterCommand = new Commands.Cluster();
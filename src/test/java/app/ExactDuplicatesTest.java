@@ -0,0 +1,106 @@
+package app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExactDuplicatesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path write(String name, byte[] data) throws Exception {
+        return Files.write(tempDir.resolve(name), data);
+    }
+
+    private static byte[] random(int n, long seed) {
+        byte[] b = new byte[n];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+
+    private static List<List<String>> names(List<ExactDuplicates.Group> groups) {
+        return groups.stream().map(g -> g.paths().stream().map(p -> p.getFileName().toString()).toList()).toList();
+    }
+
+    @Test
+    void groupsCopiesAndHardlinksAndKeepsOthersAlone() throws Exception {
+        byte[] small = random(1000, 1);
+        Path a = write("a.jpg", small);
+        Path b = write("b.jpg", small.clone());
+        Path c = write("c.jpg", random(1000, 2));         // same size, other content
+        Path link = Files.createLink(tempDir.resolve("d.jpg"), a);
+        Path e = write("e.jpg", random(10, 3));
+
+        List<ExactDuplicates.Group> groups = ExactDuplicates.group(List.of(e, link, c, b, a));
+        assertEquals(List.of(List.of("a.jpg", "b.jpg", "d.jpg"), List.of("c.jpg"), List.of("e.jpg")), names(groups));
+        assertEquals(1, groups.getFirst().hardlinks());
+        assertEquals(a, groups.getFirst().representative());
+    }
+
+    @Test
+    void largeFilesDifferingOnlyInTheMiddleNeedTheFullChecksum() throws Exception {
+        int size = 5 * ExactDuplicates.PARTIAL;
+        byte[] data = random(size, 4);
+        byte[] middle = data.clone();
+        middle[size / 2] ^= 1;
+        Path x = write("x.png", data);
+        Path y = write("y.png", data.clone());
+        Path z = write("z.png", middle);
+
+        assertEquals(List.of(List.of("x.png", "y.png"), List.of("z.png")), names(ExactDuplicates.group(List.of(x, y, z))));
+    }
+
+    @Test
+    void filesBetweenOneAndTwoPartialBlocksAreFullyCompared() throws Exception {
+        int size = ExactDuplicates.PARTIAL + 100;
+        byte[] data = random(size, 5);
+        byte[] other = data.clone();
+        other[ExactDuplicates.PARTIAL + 10] ^= 1;
+        Path x = write("x.bmp", data);
+        Path y = write("y.bmp", other);
+
+        assertEquals(List.of(List.of("x.bmp"), List.of("y.bmp")), names(ExactDuplicates.group(List.of(x, y))));
+    }
+
+    @Test
+    void unreadableFilesStayAlone() throws Exception {
+        Path a = write("a.jpg", new byte[0]);
+        Path missing1 = tempDir.resolve("gone1.jpg"), missing2 = tempDir.resolve("gone2.jpg");
+        assertEquals(List.of(List.of("a.jpg"), List.of("gone1.jpg"), List.of("gone2.jpg")),
+                names(ExactDuplicates.group(List.of(missing2, a, missing1))));
+    }
+
+    @Test
+    void rememberedChecksumsAreReusedWithoutReading() throws Exception {
+        int size = 3 * ExactDuplicates.PARTIAL;
+        byte[] data = random(size, 6);
+        Path x = write("x.png", data);
+        Path y = write("y.png", data.clone());
+        Path z = write("z.png", random(size, 7));
+        Map<Path, Long> store = new HashMap<>();
+        ExactDuplicates.Checksums known = new ExactDuplicates.Checksums() {
+            @Override public Long get(Path path, long sz, long mtime) { return store.get(path); }
+            @Override public void put(Path path, long sz, long mtime, long checksum) { store.put(path, checksum); }
+        };
+
+        List<List<String>> expected = List.of(List.of("x.png", "y.png"), List.of("z.png"));
+        assertEquals(expected, names(ExactDuplicates.group(List.of(x, y, z), known)));
+        assertEquals(store.get(x), store.get(y));
+        assertEquals(Set.of(x, y), store.keySet(), "z was told apart by its ends and never fully read");
+
+        // Overwrite y in place: the remembered checksums still group it, so nothing was read
+        Files.write(y, random(size, 8));
+        assertEquals(expected, names(ExactDuplicates.group(List.of(x, y, z), known)));
+        assertEquals(List.of(List.of("x.png"), List.of("y.png"), List.of("z.png")), names(ExactDuplicates.group(List.of(x, y, z))));
+    }
+}
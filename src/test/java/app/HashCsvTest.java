@@ -0,0 +1,40 @@
+package app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashCsvTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void singleColumnKeepsLegacyLayout() throws Exception {
+        Path csv = tempDir.resolve("index.csv");
+        HashCsv.write(csv, List.of("pHash"), List.<String[]>of(new String[]{"a.jpg", "42"}));
+        assertEquals(List.of("a.jpg,42"), Files.readAllLines(csv));
+        assertEquals(Map.of("a.jpg", 42L), HashCsv.read(csv, null));
+        assertEquals(Map.of("a.jpg", 42L), HashCsv.read(csv, "pHash"), "A legacy index answers for any algorithm");
+    }
+
+    @Test
+    void multiColumnRoundTripWithCommasInPath() throws Exception {
+        Path csv = tempDir.resolve("index.csv");
+        HashCsv.write(csv, List.of("aHash", "dHash", "pHash"), List.of(
+                new String[]{"dir,with,commas/a.jpg", "1", "2", "3"},
+                new String[]{"b.jpg", "4", "5", Long.toUnsignedString(-1L)}));
+
+        assertEquals(List.of("aHash", "dHash", "pHash"), HashCsv.columns(csv));
+        assertEquals(Map.of("dir,with,commas/a.jpg", 3L, "b.jpg", -1L), HashCsv.read(csv, null));
+        assertEquals(Map.of("dir,with,commas/a.jpg", 1L, "b.jpg", 4L), HashCsv.read(csv, "AHASH"));
+        assertEquals(Map.of("dir,with,commas/a.jpg", 2L, "b.jpg", 5L), HashCsv.read(csv, "dHash"));
+        assertThrows(IllegalArgumentException.class, () -> HashCsv.read(csv, "wHash"));
+    }
+}
@@ -0,0 +1,267 @@
+package app;
+
+import cache.HashCache;
+import core.DecodeBudget;
+import hash.Hamming;
+import hash.Hasher;
+import hash.Hashers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private void writeRandomPng(Path p, long seed) throws Exception {
+        Random rnd = new Random(seed);
+        BufferedImage img = new BufferedImage(40 + rnd.nextInt(40), 30 + rnd.nextInt(40), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < img.getHeight(); y++)
+            for (int x = 0; x < img.getWidth(); x++) img.setRGB(x, y, rnd.nextInt(0x1000000));
+        Files.createDirectories(p.getParent());
+        ImageIO.write(img, "png", p.toFile());
+    }
+
+    @Test
+    void resultsAreSortedAndIndependentOfThreadCount() throws Exception {
+        for (int i = 0; i < 24; i++) writeRandomPng(tempDir.resolve("d" + (i % 3)).resolve("img" + i + ".png"), i);
+
+        SortedMap<String, long[]> single = new HashPipeline(Hashers.parse("all"), 1, 1).run(tempDir, p -> true);
+        SortedMap<String, long[]> parallel = new HashPipeline(Hashers.parse("all"), 4, 3).run(tempDir, p -> true);
+
+        assertEquals(24, single.size());
+        assertEquals(new ArrayList<>(single.keySet()), new ArrayList<>(parallel.keySet()));
+        List<String> sorted = new ArrayList<>(single.keySet());
+        sorted.sort(null);
+        assertEquals(sorted, new ArrayList<>(parallel.keySet()), "Output must be ordered by path");
+        for (String k : single.keySet()) assertArrayEquals(single.get(k), parallel.get(k), k);
+    }
+
+    @Test
+    void tinyDecodeBudgetSerializesDecodesWithoutChangingResults() throws Exception {
+        for (int i = 0; i < 12; i++) writeRandomPng(tempDir.resolve("img" + i + ".png"), i);
+
+        SortedMap<String, long[]> free = new HashPipeline(Hashers.parse("all"), 4, 4).run(tempDir, p -> true);
+        SortedMap<String, long[]> budgeted;
+        try (DecodeBudget budget = new DecodeBudget(1)) {
+            budgeted = new HashPipeline(Hashers.parse("all"), 4, 4).withDecodeBudget(budget, Long.MAX_VALUE).run(tempDir, p -> true);
+        }
+        assertEquals(free.keySet(), budgeted.keySet());
+        for (String k : free.keySet()) assertArrayEquals(free.get(k), budgeted.get(k), k);
+    }
+
+    @Test
+    void unreadableFilesAreSkippedNotFatal() throws Exception {
+        writeRandomPng(tempDir.resolve("ok.png"), 1);
+        Files.writeString(tempDir.resolve("broken.png"), "not an image");
+
+        HashPipeline pipeline = new HashPipeline(Hashers.parse("phash"), 2, 2);
+        SortedMap<String, long[]> out = pipeline.run(tempDir, p -> true);
+
+        assertEquals(1, out.size());
+        assertEquals(1, pipeline.skipped().size());
+        assertTrue(pipeline.skipped().getFirst().contains("broken.png"));
+    }
+
+    @Test
+    void missingRootIsReported() {
+        HashPipeline pipeline = new HashPipeline(Hashers.parse("phash"), 2, 2);
+        assertThrows(NoSuchFileException.class, () -> pipeline.run(tempDir.resolve("missing"), p -> true));
+    }
+
+    @Test
+    void streamedAndFallbackDecodesAgree() throws Exception {
+        Path images = tempDir.resolve("images");
+        writeRandomPng(images.resolve("plain.png"), 7);
+        BufferedImage img = ImageIO.read(images.resolve("plain.png").toFile());
+        ImageIO.write(img, "bmp", images.resolve("plain.bmp").toFile());
+        // Adam7 interlacing is not streamed: decoded by ImageIO through a mapping instead
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(images.resolve("interlaced.png").toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        HashPipeline pipeline = new HashPipeline(Hashers.parse("dhash"), 2, 2);
+        SortedMap<String, long[]> out = pipeline.run(images, p -> true);
+
+        assertEquals(List.of(), pipeline.skipped());
+        long plain = out.get(images.resolve("plain.png").toString())[0];
+        assertEquals(plain, out.get(images.resolve("plain.bmp").toString())[0]);
+        assertTrue(Hamming.distance(plain, out.get(images.resolve("interlaced.png").toString())[0]) <= 2);
+    }
+
+    @Test
+    void sniffedFormatsAreCarriedIntoThePipeline() throws Exception {
+        Path images = tempDir.resolve("images");
+        writeRandomPng(images.resolve("a.png"), 3);
+        Files.copy(images.resolve("a.png"), images.resolve("misnamed.jpg"));
+        Files.writeString(images.resolve("fake.png"), "not an image");
+
+        SortedMap<String, long[]> byName = new HashPipeline(Hashers.parse("all"), 2, 2).run(images, new ImageFileFilter(false));
+        HashPipeline pipeline = new HashPipeline(Hashers.parse("all"), 2, 2);
+        SortedMap<String, long[]> sniffed = pipeline.run(images, new ImageFileFilter(true));
+
+        assertEquals(Set.of(images.resolve("a.png").toString(), images.resolve("misnamed.jpg").toString()), sniffed.keySet());
+        assertEquals(List.of(), pipeline.skipped(), "fake.png never reaches the pipeline");
+        for (String k : sniffed.keySet()) assertArrayEquals(byName.get(k), sniffed.get(k), k);
+    }
+
+    @Test
+    void exactCopiesAreHashedOnceAndShareHashes() throws Exception {
+        Path images = tempDir.resolve("images");
+        writeRandomPng(images.resolve("a.png"), 1);
+        writeRandomPng(images.resolve("b.png"), 2);
+        Files.copy(images.resolve("a.png"), images.resolve("copy.png"));
+        Files.createLink(images.resolve("link.png"), images.resolve("a.png"));
+
+        SortedMap<String, long[]> plain = new HashPipeline(Hashers.parse("all"), 2, 2).run(images, p -> true);
+        HashPipeline pipeline = new HashPipeline(Hashers.parse("all"), 2, 2).withExactDuplicates(true);
+        SortedMap<String, long[]> grouped = pipeline.run(images, p -> true);
+
+        assertEquals(plain.keySet(), grouped.keySet());
+        for (String k : plain.keySet()) assertArrayEquals(plain.get(k), grouped.get(k), k);
+        var groups = pipeline.exactGroups();
+        assertEquals(1, groups.size());
+        assertEquals(List.of(images.resolve("a.png"), images.resolve("copy.png"), images.resolve("link.png")), groups.getFirst().paths());
+        assertSame(grouped.get(images.resolve("a.png").toString()), grouped.get(images.resolve("copy.png").toString()),
+                "Copies reuse the representative's hashes");
+    }
+
+    @Test
+    void copiesOfASkippedFileAreReportedAndGroupsAreNotCarriedOver() throws Exception {
+        Path images = tempDir.resolve("images");
+        writeRandomPng(images.resolve("ok.png"), 1);
+        Files.writeString(images.resolve("broken.png"), "not an image");
+        Files.copy(images.resolve("broken.png"), images.resolve("broken-copy.png"));
+
+        HashPipeline pipeline = new HashPipeline(Hashers.parse("phash"), 2, 2).withExactDuplicates(true);
+        assertEquals(Set.of(images.resolve("ok.png").toString()), pipeline.run(images, p -> true).keySet());
+        assertEquals(2, pipeline.skipped().size());
+        // "broken-copy.png" sorts first and stands for the group
+        assertTrue(pipeline.skipped().get(1).startsWith("Skip " + images.resolve("broken.png")
+                + " (same content as " + images.resolve("broken-copy.png") + ": "), pipeline.skipped().get(1));
+        assertEquals(1, pipeline.exactGroups().size());
+
+        Files.delete(images.resolve("broken-copy.png"));
+        pipeline.run(images, p -> true);
+        assertEquals(List.of(), pipeline.exactGroups(), "Groups of the previous run are gone");
+        assertEquals(1, pipeline.skipped().size());
+    }
+
+    @Test
+    void exactGroupsSurviveACachedRerun() throws Exception {
+        Path images = tempDir.resolve("images");
+        writeRandomPng(images.resolve("a.png"), 1);
+        writeRandomPng(images.resolve("b.png"), 2);
+        Files.copy(images.resolve("a.png"), images.resolve("copy.png"), java.nio.file.StandardCopyOption.COPY_ATTRIBUTES);
+        Path cacheFile = tempDir.resolve("cache");
+
+        HashCache first = HashCache.load(cacheFile);
+        HashPipeline pipeline = new HashPipeline(Hashers.parse("phash"), 2, 2).withCache(first).withExactDuplicates(true);
+        SortedMap<String, long[]> a = pipeline.run(images, p -> true);
+        first.save(images);
+
+        // Same size and mtime, other bytes: the cached checksum still says copy, so it was not read
+        Path copy = images.resolve("copy.png");
+        var mtime = Files.getLastModifiedTime(copy);
+        Files.write(copy, new byte[(int) Files.size(copy)]);
+        Files.setLastModifiedTime(copy, mtime);
+
+        HashCache second = HashCache.load(cacheFile);
+        HashPipeline again = new HashPipeline(Hashers.parse("phash"), 2, 2).withCache(second).withExactDuplicates(true);
+        SortedMap<String, long[]> b = again.run(images, p -> true);
+        assertEquals(List.of(images.resolve("a.png"), copy), again.exactGroups().getFirst().paths());
+        assertEquals(2, second.hits(), "Only the representatives are looked up");
+        assertEquals(0, second.misses());
+        for (String k : a.keySet()) assertArrayEquals(a.get(k), b.get(k), k);
+    }
+
+    @Test
+    void cacheHitsSkipDecodingUnchangedFiles() throws Exception {
+        Path images = tempDir.resolve("images");
+        for (int i = 0; i < 5; i++) writeRandomPng(images.resolve("img" + i + ".png"), i);
+        Path cacheFile = tempDir.resolve("cache");
+
+        HashCache first = HashCache.load(cacheFile);
+        SortedMap<String, long[]> a = new HashPipeline(Hashers.parse("all,phash16"), 2, 2).withCache(first).run(images, p -> true);
+        first.save(images);
+        assertEquals(0, first.hits());
+        assertEquals(5, first.misses());
+
+        // Corrupt one file but keep its size and mtime: a cache hit must not even read it
+        Path img0 = images.resolve("img0.png");
+        var mtime = Files.getLastModifiedTime(img0);
+        byte[] junk = new byte[(int) Files.size(img0)];
+        Files.write(img0, junk);
+        Files.setLastModifiedTime(img0, mtime);
+
+        HashCache second = HashCache.load(cacheFile);
+        SortedMap<String, long[]> b = new HashPipeline(Hashers.parse("all,phash16"), 2, 2).withCache(second).run(images, p -> true);
+        assertEquals(5, second.hits());
+        assertEquals(0, second.misses());
+        for (String k : a.keySet()) {
+            assertEquals(3 + 4, a.get(k).length, "Three 64-bit hashes plus four words of pHash16");
+            assertArrayEquals(a.get(k), b.get(k), k);
+        }
+    }
+
+    /**
+     * With thumbnails enabled, files with a usable thumbnail are hashed from it and reported,
+     * others fall back to the image; the source survives a cache round trip.
+     */
+    @Test
+    void embeddedThumbnailsAreUsedAndRecorded() throws Exception {
+        byte[] drink = Files.readAllBytes(Path.of("fixtures/drink.jpg"));
+        BufferedImage cat = ImageIO.read(Path.of("fixtures/cat.jpg").toFile());
+        var thumb = new java.io.ByteArrayOutputStream();
+        ImageIO.write(cat, "jpg", thumb);
+        Files.write(tempDir.resolve("with-thumb.jpg"), core.ExifTest.withThumbnail(drink, thumb.toByteArray()));
+        Files.write(tempDir.resolve("plain.jpg"), drink);
+
+        List<Hasher> hashers = Hashers.parse("phash");
+        Path cacheFile = tempDir.resolve("cache");
+        HashCache cache = HashCache.load(cacheFile);
+        HashPipeline first = new HashPipeline(hashers, 2, 2).withCache(cache).withThumbnails(true);
+        SortedMap<String, long[]> out = first.run(tempDir, p -> p.toString().endsWith(".jpg"));
+        String withThumb = tempDir.resolve("with-thumb.jpg").toString(), plain = tempDir.resolve("plain.jpg").toString();
+        assertEquals(Set.of(withThumb), first.thumbnailed());
+        BufferedImage decodedThumb = ImageIO.read(new java.io.ByteArrayInputStream(thumb.toByteArray()));
+        assertEquals(hashers.getFirst().hash(decodedThumb), out.get(withThumb)[0], "Hashed from the thumbnail");
+        cache.save(tempDir);
+
+        HashCache reloaded = HashCache.load(cacheFile);
+        HashPipeline second = new HashPipeline(hashers, 2, 2).withCache(reloaded).withThumbnails(true);
+        SortedMap<String, long[]> again = second.run(tempDir, p -> p.toString().endsWith(".jpg"));
+        assertEquals(2, reloaded.hits());
+        assertEquals(Set.of(withThumb), second.thumbnailed());
+        assertArrayEquals(out.get(withThumb), again.get(withThumb));
+
+        // Without the option the thumbnail-derived entries are not reused
+        HashCache third = HashCache.load(cacheFile);
+        SortedMap<String, long[]> normal = new HashPipeline(hashers, 2, 2).withCache(third).run(tempDir, p -> p.toString().endsWith(".jpg"));
+        assertEquals(0, third.hits());
+        assertArrayEquals(normal.get(plain), normal.get(withThumb), "Same main image");
+    }
+}
@@ -0,0 +1,89 @@
+package app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageFileFilterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] encode(String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void extensionMatchIsCaseInsensitiveAndNeedsADot() {
+        ImageFileFilter filter = new ImageFileFilter(false);
+        assertTrue(filter.test(Path.of("a/b/IMG_0001.JPG")));
+        assertTrue(filter.test(Path.of("x.jpeg")));
+        assertTrue(filter.test(Path.of("x.Png")));
+        assertTrue(filter.test(Path.of("x.bmp")));
+        assertFalse(filter.test(Path.of("x.gif")));
+        assertFalse(filter.test(Path.of("jpg")));
+        assertFalse(filter.test(Path.of("x.jpg.txt")));
+        assertFalse(filter.test(Path.of("x.jpgx")));
+        assertTrue(filter.counts().isEmpty(), "Nothing is sniffed without --sniff");
+    }
+
+    @Test
+    void formatRecognisesCommonSignatures() throws Exception {
+        assertEquals("jpeg", ImageFileFilter.format(encode("jpg")));
+        assertEquals("png", ImageFileFilter.format(encode("png")));
+        assertEquals("bmp", ImageFileFilter.format(encode("bmp")));
+        assertEquals("gif", ImageFileFilter.format(encode("gif")));
+        assertEquals("tiff", ImageFileFilter.format(new byte[]{'I', 'I', 42, 0, 8, 0, 0, 0}));
+        assertEquals("webp", ImageFileFilter.format("RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.ISO_8859_1)));
+        assertEquals("heif", ImageFileFilter.format("\0\0\0\u0018ftypheic".getBytes(StandardCharsets.ISO_8859_1)));
+        assertEquals("video", ImageFileFilter.format("\0\0\0\u0018ftypisom".getBytes(StandardCharsets.ISO_8859_1)));
+        assertEquals(ImageFileFilter.UNKNOWN, ImageFileFilter.format("<html>".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(ImageFileFilter.UNKNOWN, ImageFileFilter.format(new byte[0]));
+    }
+
+    @Test
+    void sniffingGoesByContentAndCountsFormats() throws Exception {
+        Files.write(tempDir.resolve("renamed.dat"), encode("png"));
+        Files.write(tempDir.resolve("noext"), encode("jpg"));
+        Files.write(tempDir.resolve("fake.jpg"), "<html>404</html>".getBytes(StandardCharsets.US_ASCII));
+        Files.write(tempDir.resolve("anim.jpg"), encode("gif"));
+        Files.write(tempDir.resolve("empty.png"), new byte[0]);
+
+        ImageFileFilter filter = new ImageFileFilter(true);
+        assertTrue(filter.test(tempDir.resolve("renamed.dat")));
+        assertTrue(filter.test(tempDir.resolve("noext")));
+        assertFalse(filter.test(tempDir.resolve("fake.jpg")));
+        assertFalse(filter.test(tempDir.resolve("anim.jpg")), "GIF is not hashed even with a .jpg name");
+        assertFalse(filter.test(tempDir.resolve("empty.png")));
+        assertFalse(filter.test(tempDir.resolve("missing.png")));
+
+        assertEquals(Map.of("jpeg", 1L, "png", 1L, "gif", 1L, ImageFileFilter.UNKNOWN, 2L, ImageFileFilter.UNREADABLE, 1L),
+                filter.counts());
+    }
+
+    @Test
+    void acceptReportsWhatTheFilterFound() throws Exception {
+        Files.write(tempDir.resolve("renamed.jpg"), encode("png"));
+        Files.write(tempDir.resolve("fake.jpg"), "<html>404</html>".getBytes(StandardCharsets.US_ASCII));
+
+        ImageFileFilter sniffing = new ImageFileFilter(true);
+        assertEquals("png", sniffing.accept(tempDir.resolve("renamed.jpg")));
+        assertNull(sniffing.accept(tempDir.resolve("fake.jpg")));
+
+        ImageFileFilter byName = new ImageFileFilter(false);
+        assertEquals(ImageFileFilter.NOT_SNIFFED, byName.accept(tempDir.resolve("renamed.jpg")));
+        assertNull(byName.accept(tempDir.resolve("notes.txt")));
+        assertEquals(Map.of(), byName.counts());
+    }
+}
@@ -0,0 +1,79 @@
+package bench;
+
+import index.BKTreeIndex;
+import index.FlatBKTreeIndex;
+import index.Index;
+import index.MultiIndexHashIndex;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Memory and query-time comparison of the {@link Index} implementations.
+ * Not a unit test; run the main method, e.g. with {@code -Xmx4g} and an entry count:
+ * {@code java -cp target/classes:target/test-classes bench.IndexBenchmark 1000000}.
+ */
+public final class IndexBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        long[] hashes = corpus(n, 42);
+        long[] probes = probes(hashes, queries, 7);
+
+        run("BKTreeIndex", BKTreeIndex::new, hashes, probes);
+        run("FlatBKTreeIndex", FlatBKTreeIndex::new, hashes, probes);
+        run("MultiIndexHash", () -> MultiIndexHashIndex.forExpectedSize(n), hashes, probes);
+    }
+
+    /** Near-duplicate clusters around random centres, the shape of a real photo library. */
+    static long[] corpus(int n, long seed) {
+        Random rnd = new Random(seed);
+        long[] centres = new long[Math.max(1, n / 20)];
+        for (int i = 0; i < centres.length; i++) centres[i] = rnd.nextLong();
+        long[] out = new long[n];
+        for (int i = 0; i < n; i++) {
+            long h = centres[rnd.nextInt(centres.length)];
+            for (int f = rnd.nextInt(6); f > 0; f--) h ^= 1L << rnd.nextInt(64);
+            out[i] = h;
+        }
+        return out;
+    }
+
+    static long[] probes(long[] hashes, int count, long seed) {
+        Random rnd = new Random(seed);
+        long[] out = new long[count];
+        for (int i = 0; i < count; i++) out[i] = hashes[rnd.nextInt(hashes.length)] ^ (1L << rnd.nextInt(64));
+        return out;
+    }
+
+    static void run(String name, Supplier<Index> factory, long[] hashes, long[] probes) {
+        String[] ids = new String[hashes.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = "id" + i;
+
+        long before = usedHeap();
+        long t0 = System.nanoTime();
+        Index index = factory.get();
+        for (int i = 0; i < hashes.length; i++) index.add(hashes[i], ids[i]);
+        long buildMs = (System.nanoTime() - t0) / 1_000_000;
+        index.withinHamming(0L, 0); // finish any lazy packing before measuring
+        long bytes = usedHeap() - before;
+
+        System.out.printf("%-16s %,d entries: build %,d ms, ~%d bytes/entry%n",
+                name, hashes.length, buildMs, bytes / hashes.length);
+        for (int r : new int[]{2, 6, 10}) {
+            long hits = 0;
+            long q0 = System.nanoTime();
+            for (long p : probes) hits += index.withinHamming(p, r).size();
+            double usPerQuery = (System.nanoTime() - q0) / 1000.0 / probes.length;
+            System.out.printf("  radius %2d: %10.1f us/query (%,d hits)%n", r, usPerQuery, hits);
+        }
+        if (index.withinHamming(0L, 64).size() != hashes.length) throw new AssertionError("lost entries");
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
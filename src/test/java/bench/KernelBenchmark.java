@@ -0,0 +1,81 @@
+package bench;
+
+import core.Kernels;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Scalar vs Vector API timing of each {@link Kernels} kernel, checking that both agree.
+ * Not a unit test; build with {@code mvn -Psimd test-compile}, then run the main method with the
+ * incubator module, e.g.
+ * {@code java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes bench.KernelBenchmark}.
+ */
+public final class KernelBenchmark {
+
+    interface Op {
+        long run(Kernels k);
+    }
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        Kernels scalar = Kernels.scalar(), simd = Kernels.simd();
+        Random rnd = new Random(42);
+
+        // A 4000-pixel scanline, as in a 12 MP photo
+        int[] rgb = new int[4000];
+        for (int i = 0; i < rgb.length; i++) rgb[i] = rnd.nextInt();
+        int[] luma = new int[rgb.length];
+        for (int i = 0; i < luma.length; i++) luma[i] = rnd.nextInt(256);
+        long[] row = new long[32], grid = new long[32 * 32];
+        for (int i = 0; i < row.length; i++) row[i] = rnd.nextInt(1 << 24);
+        // pHash: 32x32 samples times the transposed basis, keeping 8 columns
+        double[] in = new double[32 * 32], basis = new double[32 * 32], out = new double[32 * 8];
+        for (int i = 0; i < in.length; i++) in[i] = rnd.nextDouble();
+        for (int i = 0; i < basis.length; i++) basis[i] = rnd.nextDouble() - 0.5;
+
+        System.out.printf("%-12s %12s %12s %8s   (%s vs %s)%n", "kernel", "scalar ns", "simd ns", "speedup", scalar.name(), simd.name());
+        run("lumaRgb", rounds, scalar, simd, k -> {
+            k.lumaRgb(rgb, 0, luma, rgb.length);
+            return Arrays.hashCode(luma);
+        });
+        run("lumaArgb", rounds, scalar, simd, k -> {
+            k.lumaArgb(rgb, 0, luma, rgb.length);
+            return Arrays.hashCode(luma);
+        });
+        run("sum", rounds, scalar, simd, k -> {
+            // One 32-column row of the box filter: 32 runs of 125 pixels
+            long s = 0;
+            for (int c = 0; c < 32; c++) s += k.sum(luma, c * 125, c * 125 + 125);
+            return s;
+        });
+        run("addScaled", rounds, scalar, simd, k -> {
+            Arrays.fill(grid, 0L);
+            for (int y = 0; y < 32; y++) k.addScaled(grid, y * 32, row, 125, 32);
+            return Arrays.hashCode(grid);
+        });
+        run("dct32x8", rounds, scalar, simd, k -> {
+            k.multiply(in, basis, 32, out, 32, 32, 8);
+            return Arrays.hashCode(out);
+        });
+    }
+
+    static void run(String name, int rounds, Kernels scalar, Kernels simd, Op op) {
+        if (op.run(scalar) != op.run(simd)) throw new AssertionError(name + ": scalar and simd disagree");
+        double s = 0, v = 0;
+        for (int pass = 0; pass < 5; pass++) { // the first passes warm up the JIT
+            s = time(rounds, scalar, op);
+            v = time(rounds, simd, op);
+        }
+        System.out.printf("%-12s %12.0f %12.0f %7.2fx%n", name, s, v, s / v);
+    }
+
+    static double time(int rounds, Kernels k, Op op) {
+        long sink = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) sink += op.run(k);
+        double ns = (System.nanoTime() - t0) / (double) rounds;
+        if (sink == 42) System.out.print("");
+        return ns;
+    }
+}
@@ -0,0 +1,95 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final List<String> P = List.of("pHash@1");
+    private static final List<String> AP = List.of("aHash@1", "pHash@1");
+
+    @Test
+    void roundTripsAndMatchesOnSizeAndMtime() throws Exception {
+        Path file = tempDir.resolve("cache");
+        HashCache c = HashCache.load(file);
+        assertNull(c.lookup("/x/a.jpg", 10, 100, P));
+        c.put("/x/a.jpg", 10, 100, AP, new long[]{7L, -1L});
+        c.save(tempDir.resolve("x"));
+
+        HashCache reloaded = HashCache.load(file);
+        assertArrayEquals(new long[]{-1L}, reloaded.lookup("/x/a.jpg", 10, 100, P));
+        assertArrayEquals(new long[]{7L, -1L}, reloaded.lookup("/x/a.jpg", 10, 100, AP));
+        assertNull(reloaded.lookup("/x/a.jpg", 11, 100, P), "Size change is a miss");
+        assertNull(reloaded.lookup("/x/a.jpg", 10, 101, P), "Mtime change is a miss");
+        assertNull(reloaded.lookup("/x/a.jpg", 10, 100, List.of("pHash@2")), "Hasher version change is a miss");
+        assertEquals(2, reloaded.hits());
+        assertEquals(3, reloaded.misses());
+    }
+
+    @Test
+    void compactionDropsUnseenEntriesUnderRoot() throws Exception {
+        Path root = tempDir.resolve("root");
+        Path file = tempDir.resolve("cache");
+        Path outside = Files.createFile(tempDir.resolve("outside.jpg"));
+
+        HashCache c = HashCache.load(file);
+        c.put(root.resolve("kept.jpg").toString(), 1, 1, P, new long[]{1});
+        c.put(root.resolve("deleted.jpg").toString(), 1, 1, P, new long[]{2});
+        c.put(outside.toString(), 1, 1, P, new long[]{3});
+        c.put(tempDir.resolve("gone.jpg").toString(), 1, 1, P, new long[]{4});
+        c.save(root);
+
+        // Next run only sees kept.jpg
+        HashCache next = HashCache.load(file);
+        assertNotNull(next.lookup(root.resolve("kept.jpg").toString(), 1, 1, P));
+        next.save(root);
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size(), lines.toString());
+        assertTrue(lines.stream().anyMatch(l -> l.endsWith("kept.jpg")));
+        assertTrue(lines.stream().anyMatch(l -> l.endsWith("outside.jpg")), "Existing files outside the root are kept");
+    }
+
+    @Test
+    void compactionLeavesSiblingRootsWithACommonPrefixAlone() throws Exception {
+        Path photos = Files.createDirectories(tempDir.resolve("photos"));
+        Path archive = Files.createDirectories(tempDir.resolve("photos-archive"));
+        Path file = tempDir.resolve("cache");
+        Path old = Files.createFile(archive.resolve("old.jpg"));
+        Path gone = photos.resolve("gone.jpg");
+
+        HashCache c = HashCache.load(file);
+        c.put(old.toString(), 1, 1, P, new long[]{1});
+        c.put(gone.toString(), 1, 1, P, new long[]{2});
+        c.save(archive);
+
+        // Scanning photos drops its own unseen entries but not those of photos-archive
+        HashCache next = HashCache.load(file);
+        next.save(photos);
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size(), lines.toString());
+        assertTrue(lines.getFirst().endsWith(old.toString()));
+
+        // A relative spelling of the same file hits the entry written under its absolute path
+        Path relative = Path.of("").toAbsolutePath().relativize(old);
+        assertNotNull(HashCache.load(file).lookup(relative.toString(), 1, 1, P));
+    }
+
+    @Test
+    void ignoresCorruptLines() throws Exception {
+        Path file = tempDir.resolve("cache");
+        Files.write(file, List.of("garbage", "1\t2\tpHash@1\tnot-a-number\t/a.jpg", "1\t2\tpHash@1\t5\t/b.jpg"));
+        HashCache c = HashCache.load(file);
+        assertNull(c.lookup("/a.jpg", 1, 2, P));
+        assertArrayEquals(new long[]{5}, c.lookup("/b.jpg", 1, 2, P));
+    }
+}
@@ -1,10 +1,16 @@
 package cluster;
 
+import hash.WideHash;
+import index.BKTreeIndex;
 import index.Index;
+import index.WideIndex;
+import index.WideMultiIndexHashIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -151,4 +157,107 @@ class ClustererTest {
         verify(mockIndex, times(1)).withinHamming(1L, 1);
         verify(mockIndex, times(1)).withinHamming(2L, 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should query each distinct hash only once, however many items share it")
+    void cluster_withIdenticalHashes_shouldQueryOnce() {
+        // Given: 50k copies of the same icon plus one unrelated image
+        Map<String, Long> items = new LinkedHashMap<>();
+        List<String> copies = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            items.put("icon" + i, 7L);
+            copies.add("icon" + i);
+        }
+        items.put("other", 1000L);
+
+        when(mockIndex.withinHamming(7L, 4)).thenReturn(copies);
+        when(mockIndex.withinHamming(1000L, 4)).thenReturn(List.of("other"));
+
+        // When: The cluster method is called
+        List<Cluster> clusters = Clusterer.cluster(items, mockIndex, 4);
+
+        // Then: One big cluster in item order, one singleton, two queries in total
+        assertEquals(2, clusters.size());
+        assertEquals(copies, clusters.get(0).members());
+        assertEquals(List.of("other"), clusters.get(1).members());
+        verify(mockIndex, times(1)).withinHamming(7L, 4);
+        verify(mockIndex, times(2)).withinHamming(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should join items transitively through a distinct-hash chain")
+    void cluster_withChainThroughSharedHash_shouldMerge() {
+        // a and b share a hash; c is only a neighbour of that hash
+        Map<String, Long> items = new LinkedHashMap<>();
+        items.put("a", 1L);
+        items.put("c", 3L);
+        items.put("b", 1L);
+
+        when(mockIndex.withinHamming(1L, 1)).thenReturn(List.of("a", "b", "c"));
+        when(mockIndex.withinHamming(3L, 1)).thenReturn(List.of("a", "b", "c"));
+
+        List<Cluster> clusters = Clusterer.cluster(items, mockIndex, 1);
+        assertEquals(1, clusters.size());
+        assertEquals(List.of("a", "c", "b"), clusters.get(0).members());
+    }
+
+    @Test
+    @DisplayName("Should cluster wide hashes through a wide index, grouping equal hashes")
+    void cluster_withWideHashes_shouldMergeNeighbours() {
+        WideHash base = new WideHash(new long[]{1L, 2L, 3L, 4L});
+        Map<String, WideHash> items = new LinkedHashMap<>();
+        items.put("a", base);
+        items.put("b", new WideHash(new long[]{1L, 2L, 3L, 4L}));
+        items.put("c", new WideHash(new long[]{1L, 2L, 3L, 5L}));
+        items.put("d", new WideHash(new long[]{-1L, 2L, 3L, 4L}));
+
+        WideIndex index = new WideMultiIndexHashIndex(256);
+        items.forEach((id, h) -> index.add(h, id));
+
+        List<Cluster> clusters = Clusterer.cluster(items, index, 2);
+        assertEquals(2, clusters.size());
+        assertEquals(List.of("a", "b", "c"), clusters.get(0).members());
+        assertEquals(List.of("d"), clusters.get(1).members());
+    }
+
+    @Test
+    @DisplayName("Cascade should merge only candidate pairs that the stronger hash confirms")
+    void cascade_shouldVerifyCandidatesBeforeMerging() {
+        // Cheap hashes chain a - b - c - d within radius 2; strong hashes only confirm a-b and c-d
+        Map<String, Long> cheap = new LinkedHashMap<>();
+        cheap.put("a", 0b0000L);
+        cheap.put("b", 0b0011L);
+        cheap.put("c", 0b1111L);
+        cheap.put("d", 0b1111L);
+        cheap.put("e", -1L);
+        Map<String, Long> strong = Map.of("a", 0L, "b", 1L, "c", 0xff00L, "d", 0xff01L, "e", 0L);
+
+        Index index = new BKTreeIndex();
+        cheap.forEach((id, h) -> index.add(h, id));
+        Clusterer.Cascade result = Clusterer.cascade(cheap, index, 2, strong, 1);
+
+        // candidates: a-b, b-c, b-d, c-d; verified: a-b, c-d
+        assertEquals(4, result.candidateEdges());
+        assertEquals(2, result.verifiedEdges());
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d"), List.of("e")),
+                result.clusters().stream().map(Cluster::members).toList());
+
+        // Without verification the same candidates chain everything but e together
+        assertEquals(2, Clusterer.cluster(cheap, index, 2).size());
+    }
+
+    @Test
+    @DisplayName("Cascade should leave files without a verification hash unmerged")
+    void cascade_withMissingStrongHash_shouldNotMerge() {
+        Map<String, Long> cheap = new LinkedHashMap<>();
+        cheap.put("a", 5L);
+        cheap.put("b", 5L);
+        Index index = new BKTreeIndex();
+        cheap.forEach((id, h) -> index.add(h, id));
+
+        Clusterer.Cascade result = Clusterer.cascade(cheap, index, 0, Map.of("a", 1L), 64);
+        assertEquals(1, result.candidateEdges());
+        assertEquals(0, result.verifiedEdges());
+        assertEquals(2, result.clusters().size());
+    }
+}
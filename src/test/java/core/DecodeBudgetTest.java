@@ -0,0 +1,153 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecodeBudgetTest {
+
+    /**
+     * A decode waits until enough budget is free; requests above the budget are clamped and run alone.
+     */
+    @Test
+    void testAcquireBlocksUntilReleased() throws Exception {
+        try (DecodeBudget budget = new DecodeBudget(1 << 20)) {
+            long big = budget.acquire(800L << 20);
+            assertEquals(1024, big, "Clamped to the whole budget (in KiB permits)");
+
+            CountDownLatch admitted = new CountDownLatch(1);
+            Thread t = new Thread(() -> {
+                try {
+                    long p = budget.acquire(100_000);
+                    admitted.countDown();
+                    budget.release(p);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.start();
+            assertFalse(admitted.await(200, TimeUnit.MILLISECONDS), "Must wait for the panorama to finish");
+            budget.release(big);
+            assertTrue(admitted.await(5, TimeUnit.SECONDS));
+            t.join();
+        }
+    }
+
+    /**
+     * Memory pressure withdraws half of the budget until it is relieved.
+     */
+    @Test
+    void testPressureHalvesTheBudget() throws Exception {
+        try (DecodeBudget budget = new DecodeBudget(1 << 20)) {
+            budget.pressure();
+            assertTrue(budget.isPressured());
+            long half = budget.acquire(512 << 10);
+
+            CountDownLatch admitted = new CountDownLatch(1);
+            Thread t = new Thread(() -> {
+                try {
+                    budget.release(budget.acquire(1024));
+                    admitted.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.start();
+            assertFalse(admitted.await(200, TimeUnit.MILLISECONDS), "Only half of the budget is available");
+            budget.relieve();
+            assertTrue(admitted.await(5, TimeUnit.SECONDS));
+            t.join();
+            budget.release(half);
+            assertFalse(budget.isPressured());
+        }
+    }
+
+    /**
+     * A request larger than what pressure left of the budget is clamped to that, not to the
+     * full budget that no longer exists, so an idle budget under pressure cannot deadlock.
+     */
+    @Test
+    void testLargeRequestUnderPressureIsClampedToWhatIsLeft() throws Exception {
+        try (DecodeBudget budget = new DecodeBudget(1 << 20)) {
+            budget.pressure();
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () -> {
+                long granted = budget.acquire(800L << 20);
+                assertEquals(512, granted);
+                budget.release(granted);
+            });
+        }
+    }
+
+    /**
+     * A waiting request lifts the pressure itself once the heap has recovered, even if
+     * nothing is released.
+     */
+    @Test
+    void testWaitingRequestPollsForRelief() throws Exception {
+        try (DecodeBudget budget = new DecodeBudget(1 << 20, 20)) {
+            budget.pressure();
+            long half = budget.acquire(1L << 20);
+            CountDownLatch admitted = new CountDownLatch(1);
+            Thread t = new Thread(() -> {
+                try {
+                    budget.release(budget.acquire(1024));
+                    admitted.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.start();
+            assertTrue(admitted.await(5, TimeUnit.SECONDS), "Heap is below the threshold in tests");
+            assertFalse(budget.isPressured());
+            t.join();
+            budget.release(half);
+        }
+    }
+
+    /**
+     * An unknown size ({@code Long.MAX_VALUE}) takes the whole budget instead of wrapping
+     * around to a single permit.
+     */
+    @Test
+    void testUnknownSizeTakesTheWholeBudget() throws Exception {
+        assertEquals(1024, DecodeBudget.permits(Long.MAX_VALUE, 1024));
+        assertEquals(1024, DecodeBudget.permits(Long.MAX_VALUE - 1, 1024));
+        assertEquals(1, DecodeBudget.permits(0, 1024));
+        assertEquals(1, DecodeBudget.permits(-5, 1024));
+        assertEquals(2, DecodeBudget.permits(1025, 1024));
+        try (DecodeBudget budget = new DecodeBudget(1 << 20)) {
+            long granted = budget.acquire(Long.MAX_VALUE);
+            assertEquals(1024, granted);
+            budget.release(granted);
+        }
+    }
+
+    /**
+     * The JVM-wide collection thresholds stay installed while any budget is open and are
+     * restored once the last one closes.
+     */
+    @Test
+    void testClosingTheLastBudgetRestoresThresholds() {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP && p.isCollectionUsageThresholdSupported())
+                .toList();
+        List<Long> before = pools.stream().map(MemoryPoolMXBean::getCollectionUsageThreshold).toList();
+        DecodeBudget a = new DecodeBudget(1 << 20), b = new DecodeBudget(1 << 20);
+        a.close();
+        a.close();
+        for (int i = 0; i < pools.size(); i++) {
+            if (before.get(i) == 0 && pools.get(i).getUsage().getMax() > 0) {
+                assertTrue(pools.get(i).getCollectionUsageThreshold() > 0, "Still installed for the open budget");
+            }
+        }
+        b.close();
+        assertEquals(before, pools.stream().map(MemoryPoolMXBean::getCollectionUsageThreshold).toList());
+    }
+}
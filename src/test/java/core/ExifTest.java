@@ -9,6 +9,10 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.exif.ExifIFD0Directory;
 
 import org.junit.jupiter.api.io.TempDir;
 
@@ -19,6 +23,116 @@ public class ExifTest {
         assertEquals(1, Exif.readOrientationSafe(Path.of("fixtures/exif-tests/no-orientation.jpg")));
     }
 
+    /**
+     * The APP1 reader agrees with metadata-extractor on every fixture.
+     */
+    @Test
+    void testReadOrientationMatchesMetadataExtractor() throws Exception {
+        List<Path> files;
+        try (var walk = Files.walk(Path.of("fixtures"))) {
+            files = walk.filter(p -> p.toString().matches("(?i).*\\.(jpg|png)")).sorted().toList();
+        }
+        int rotated = 0;
+        for (Path p : files) {
+            int expected = 1;
+            var dir = ImageMetadataReader.readMetadata(p.toFile()).getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (dir != null && dir.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                expected = dir.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+            }
+            assertEquals(expected, Exif.readOrientationSafe(p), p.toString());
+            assertEquals(expected, Exif.readOrientation(Files.readAllBytes(p)), p.toString());
+            if (expected != 1) rotated++;
+        }
+        System.out.println("EXIF orientation: " + rotated + " of " + files.size() + " fixtures rotated");
+    }
+
+    /**
+     * Big- and little-endian TIFF headers in JPEG APP1 and PNG eXIf chunks.
+     */
+    @Test
+    void testReadOrientationFromSyntheticHeaders() {
+        for (boolean le : new boolean[]{true, false}) {
+            byte[] tiff = tiff(le, 6);
+            byte[] app1 = new byte[6 + tiff.length];
+            System.arraycopy("Exif\0\0".getBytes(), 0, app1, 0, 6);
+            System.arraycopy(tiff, 0, app1, 6, tiff.length);
+            byte[] jpeg = concat(new byte[]{(byte) 0xFF, (byte) 0xD8}, segment(0xE0, new byte[14]), segment(0xE1, app1),
+                    new byte[]{(byte) 0xFF, (byte) 0xDA, 0, 2});
+            assertEquals(6, Exif.readOrientation(jpeg), "JPEG le=" + le);
+
+            byte[] png = concat(new byte[]{(byte) 0x89, 'P', 'N', 'G', 13, 10, 26, 10},
+                    chunk("IHDR", new byte[13]), chunk("eXIf", tiff(le, 8)), chunk("IDAT", new byte[4]));
+            assertEquals(8, Exif.readOrientation(png), "PNG le=" + le);
+        }
+        // An APP1 after the frame header is ignored, out-of-range values read as 1
+        byte[] late = concat(new byte[]{(byte) 0xFF, (byte) 0xD8}, segment(0xC0, new byte[15]), segment(0xE1, tiff(true, 3)));
+        assertEquals(1, Exif.readOrientation(late));
+        byte[] tiff = tiff(true, 9);
+        byte[] app1 = concat("Exif\0\0".getBytes(), tiff);
+        assertEquals(1, Exif.readOrientation(concat(new byte[]{(byte) 0xFF, (byte) 0xD8}, segment(0xE1, app1))));
+    }
+
+    /**
+     * {@code jpeg} with an APP1 EXIF segment whose IFD1 carries {@code thumb} as the embedded
+     * thumbnail (tags 513/514), the layout cameras write.
+     */
+    public static byte[] withThumbnail(byte[] jpeg, byte[] thumb) {
+        int ifd1 = 8 + 2 + 4, data = ifd1 + 2 + 2 * 12 + 4;
+        java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(data + thumb.length).order(java.nio.ByteOrder.BIG_ENDIAN);
+        b.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+        b.putShort((short) 0).putInt(ifd1);                                         // empty IFD0 -> IFD1
+        b.putShort((short) 2);
+        b.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(data);
+        b.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(thumb.length);
+        b.putInt(0);
+        b.put(thumb);
+        byte[] app1 = segment(0xE1, concat("Exif\0\0".getBytes(), b.array()));
+        return concat(java.util.Arrays.copyOf(jpeg, 2), app1, java.util.Arrays.copyOfRange(jpeg, 2, jpeg.length));
+    }
+
+    /**
+     * The IFD1 thumbnail is returned byte for byte; files without one give null.
+     */
+    @Test
+    void testThumbnail() throws Exception {
+        byte[] main = Files.readAllBytes(Path.of("fixtures/drink.jpg"));
+        byte[] thumb = Files.readAllBytes(Path.of("fixtures/cat.jpg"));
+        byte[] both = withThumbnail(main, thumb);
+        assertArrayEquals(thumb, Exif.thumbnail(both));
+        assertNotNull(javax.imageio.ImageIO.read(new java.io.ByteArrayInputStream(both)), "Still a valid JPEG");
+        assertNull(Exif.thumbnail(main));
+        assertNull(Exif.thumbnail(java.util.Arrays.copyOf(both, 60)), "Truncated IFD1");
+        assertNull(Exif.thumbnail(thumb));
+    }
+
+    private static byte[] tiff(boolean le, int orientation) {
+        java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(8 + 2 + 2 * 12 + 4)
+                .order(le ? java.nio.ByteOrder.LITTLE_ENDIAN : java.nio.ByteOrder.BIG_ENDIAN);
+        b.put(le ? (byte) 'I' : (byte) 'M').put(le ? (byte) 'I' : (byte) 'M').putShort((short) 42).putInt(8);
+        b.putShort((short) 2);
+        b.putShort((short) 0x010F).putShort((short) 2).putInt(4).putInt(0);        // Make, ignored
+        b.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        b.putInt(0);
+        return b.array();
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        int len = payload.length + 2;
+        return concat(new byte[]{(byte) 0xFF, (byte) marker, (byte) (len >> 8), (byte) len}, payload);
+    }
+
+    private static byte[] chunk(String type, byte[] payload) {
+        java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(12 + payload.length);
+        b.putInt(payload.length).put(type.getBytes()).put(payload).putInt(0); // CRC is not checked
+        return b.array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        for (byte[] p : parts) out.writeBytes(p);
+        return out.toByteArray();
+    }
+
     @Test
     void testNullImageTransformReturnsNull() {
         assertNull(Exif.transform(null, 1));
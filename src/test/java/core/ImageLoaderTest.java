@@ -2,9 +2,14 @@ package core;
 
 import org.junit.jupiter.api.Test;
 
+import hash.Hamming;
+import hash.Hasher;
+import hash.Hashers;
+
 import java.awt.image.BufferedImage;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -80,4 +85,89 @@ class ImageLoaderTest {
             assertSame(mockImage, result);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Subsampled hashing decodes keep at least the requested side and leave small images alone.
+     */
+    @Test
+    void testDecodeForHashSubsamplesLargeImages() throws Exception {
+        Path drink = Path.of("fixtures/drink.jpg"); // 810x810
+        BufferedImage sub = ImageLoader.decodeForHash(drink, 256, Long.MAX_VALUE);
+        assertEquals(270, sub.getWidth(), "810 / stride 3");
+        assertEquals(270, sub.getHeight());
+
+        BufferedImage small = ImageLoader.decodeForHash(Path.of("fixtures/cat.jpg"), 256, Long.MAX_VALUE); // 184x184
+        assertEquals(184, small.getWidth(), "Images below the minimum side are decoded as-is");
+
+        assertEquals(1, ImageLoader.subsampling(300, 5000, 256));
+        assertEquals(23, ImageLoader.subsampling(8000, 6000, 256));
+
+        // 200MP panorama: the hard pixel limit forces a coarser stride than the minimum side would
+        assertEquals(19, ImageLoader.subsampling(40_000, 5_000, 256));
+        int s = ImageLoader.subsampling(40_000, 5_000, 256, 100_000);
+        assertTrue(ImageLoader.decodedPixels(40_000, 5_000, s) <= 100_000);
+        assertTrue(ImageLoader.decodedPixels(40_000, 5_000, s - 1) > 100_000, "Smallest sufficient stride");
+        BufferedImage capped = ImageLoader.decodeForHash(Files.readAllBytes(drink), drink, 256, 10_000);
+        assertTrue(capped.getWidth() * capped.getHeight() <= 10_000);
+        BufferedImage mapped = ImageLoader.decodeForHash(drink, 256, 10_000);
+        assertEquals(capped.getWidth(), mapped.getWidth(), "Same stride whether decoded from the file or from memory");
+        assertEquals(capped.getRGB(17, 23), mapped.getRGB(17, 23));
+    }
+
+    /**
+     * Measures and bounds the hash drift of subsampled decoding against full-resolution decoding
+     * over the fixtures, at the production minimum side and at a much more aggressive one.
+     */
+    @Test
+    void testDecodeForHashDriftOverFixtures() throws Exception {
+        List<Hasher> hashers = Hashers.parse("all");
+        List<Path> fixtures;
+        try (var files = Files.walk(Path.of("fixtures"))) {
+            fixtures = files.filter(p -> p.toString().matches("(?i).*\\.(jpg|png)")).sorted().toList();
+        }
+        for (int minSide : new int[]{ImageLoader.HASH_MIN_SIDE, 64}) {
+            int[] worst = new int[hashers.size()];
+            int[] total = new int[hashers.size()];
+            for (Path p : fixtures) {
+                BufferedImage full = ImageLoader.load(p);
+                BufferedImage sub = Exif.applyOrientation(ImageLoader.decodeForHash(p, minSide, Long.MAX_VALUE), p);
+                for (int i = 0; i < hashers.size(); i++) {
+                    int d = Hamming.distance(hashers.get(i).hash(full), hashers.get(i).hash(sub));
+                    worst[i] = Math.max(worst[i], d);
+                    total[i] += d;
+                }
+            }
+            for (int i = 0; i < hashers.size(); i++) {
+                System.out.printf("subsampling drift (min side %d) %s: mean %.2f bits, max %d bits over %d fixtures%n",
+                        minSide, hashers.get(i).name(), total[i] / (double) fixtures.size(), worst[i], fixtures.size());
+                if (minSide == ImageLoader.HASH_MIN_SIDE) {
+                    assertTrue(worst[i] <= 4, hashers.get(i).name() + " drifted " + worst[i] + " bits");
+                }
+            }
+        }
+    }
+
+    /**
+     * The embedded thumbnail is used only when its aspect ratio matches the main image.
+     */
+    @Test
+    void testDecodeThumbnailForHash() throws Exception {
+        byte[] main = Files.readAllBytes(Path.of("fixtures/drink.jpg")); // 810x810
+        byte[] square = jpeg(new BufferedImage(120, 120, BufferedImage.TYPE_INT_RGB));
+        byte[] wide = jpeg(new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB));
+        byte[] tiny = jpeg(new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage thumb = ImageLoader.decodeThumbnailForHash(ExifTest.withThumbnail(main, square));
+        assertNotNull(thumb);
+        assertEquals(120, thumb.getWidth());
+        assertNull(ImageLoader.decodeThumbnailForHash(ExifTest.withThumbnail(main, wide)), "Aspect mismatch");
+        assertNull(ImageLoader.decodeThumbnailForHash(ExifTest.withThumbnail(main, tiny)), "Below THUMBNAIL_MIN_SIDE");
+        assertNull(ImageLoader.decodeThumbnailForHash(main), "No thumbnail");
+    }
+
+    private static byte[] jpeg(BufferedImage img) throws Exception {
+        var out = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(img, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageProbeTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path write(String format, int w, int h, int type) throws IOException {
+        Path p = tempDir.resolve("img." + format);
+        ImageIO.write(new BufferedImage(w, h, type), format, p.toFile());
+        return p;
+    }
+
+    @Test
+    void readsJpegPngAndBmpHeaders() throws Exception {
+        assertEquals(new ImageProbe.Info("jpeg", 123, 45), ImageProbe.probe(write("jpg", 123, 45, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(new ImageProbe.Info("png", 321, 7), ImageProbe.probe(write("png", 321, 7, BufferedImage.TYPE_INT_ARGB)));
+        assertEquals(new ImageProbe.Info("bmp", 9, 640), ImageProbe.probe(write("bmp", 9, 640, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    void matchesDecodedDimensionsOfFixtures() throws Exception {
+        try (var files = Files.walk(Path.of("fixtures"))) {
+            for (Path p : files.filter(Files::isRegularFile).toList()) {
+                BufferedImage img = ImageIO.read(p.toFile());
+                if (img == null) continue;
+                ImageProbe.Info info = ImageProbe.probe(p);
+                assertEquals(img.getWidth(), info.width(), p.toString());
+                assertEquals(img.getHeight(), info.height(), p.toString());
+            }
+        }
+    }
+
+    @Test
+    void fallsBackToImageReaderForOtherFormats() throws Exception {
+        ImageProbe.Info info = ImageProbe.probe(write("gif", 17, 11, BufferedImage.TYPE_BYTE_INDEXED));
+        assertEquals(17, info.width());
+        assertEquals(11, info.height());
+        assertEquals(17L * 11, info.pixels());
+    }
+
+    @Test
+    void truncatedJpegHeaderFallsBackAndNonImagesFail() throws Exception {
+        Path junk = tempDir.resolve("junk.jpg");
+        Files.write(junk, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00});
+        assertThrows(IOException.class, () -> ImageProbe.probe(junk));
+
+        Path text = tempDir.resolve("notes.txt");
+        Files.writeString(text, "hello");
+        assertThrows(IOException.class, () -> ImageProbe.probe(text));
+    }
+
+    @Test
+    void probeHeaderNeverDecodes() throws Exception {
+        assertEquals(new ImageProbe.Info("png", 321, 7), ImageProbe.probeHeader(write("png", 321, 7, BufferedImage.TYPE_INT_ARGB)));
+        assertEquals(new ImageProbe.Info("gif", 12, 34), ImageProbe.probeHeader(write("gif", 12, 34, BufferedImage.TYPE_BYTE_INDEXED)));
+        Path junk = Files.writeString(tempDir.resolve("junk.png"), "not an image");
+        assertNull(ImageProbe.probeHeader(junk));
+        assertNull(ImageProbe.probeHeader(tempDir.resolve("missing.png")));
+    }
+}
@@ -0,0 +1,69 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageReadersTest {
+
+    private static final Path JPEG = Path.of("fixtures/drink.jpg");
+
+    /**
+     * A thread gets the same reader back for every file of a format, other threads get their own.
+     */
+    @Test
+    void testReadersAreReusedPerThread() throws Exception {
+        byte[] data = Files.readAllBytes(JPEG);
+        ImageReader first = ImageReaders.with(MappedImageInputStream.of(data), r -> r);
+        ImageReader second = ImageReaders.with(MappedImageInputStream.of(data), r -> r);
+        assertSame(first, second);
+        assertNull(first.getInput(), "Input is released after use");
+
+        AtomicReference<ImageReader> other = new AtomicReference<>();
+        Thread t = new Thread(() -> {
+            try {
+                other.set(ImageReaders.with(MappedImageInputStream.of(data), r -> r));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+        t.join();
+        assertNotNull(other.get());
+        assertNotSame(first, other.get());
+    }
+
+    /**
+     * A reader that failed is replaced, and decoding keeps working afterwards.
+     */
+    @Test
+    void testFailedReaderIsReplaced() throws Exception {
+        byte[] data = Files.readAllBytes(JPEG);
+        ImageReader before = ImageReaders.with(MappedImageInputStream.of(data), r -> r);
+        byte[] corrupt = Arrays.copyOf(data, 200);
+        assertThrows(Exception.class,
+                () -> ImageReaders.with(MappedImageInputStream.of(corrupt), r -> r.read(0, r.getDefaultReadParam())));
+        ImageReader after = ImageReaders.with(MappedImageInputStream.of(data), r -> r);
+        assertNotSame(before, after);
+        BufferedImage img = ImageReaders.with(MappedImageInputStream.of(data), r -> r.read(0, r.getDefaultReadParam()));
+        assertEquals(810, img.getWidth());
+    }
+
+    /**
+     * Formats are recognised from magic bytes; unknown input gets no reader.
+     */
+    @Test
+    void testSniffAndUnknownInput() throws Exception {
+        assertEquals("jpeg", ImageReaders.sniff(MappedImageInputStream.of(Files.readAllBytes(JPEG))));
+        assertEquals("png", ImageReaders.sniff(MappedImageInputStream.of(Files.readAllBytes(Path.of("fixtures/drink-png.png")))));
+        assertNull(ImageReaders.sniff(MappedImageInputStream.of("hello".getBytes())));
+        assertNull(ImageReaders.with(MappedImageInputStream.of("not an image".getBytes()), r -> r));
+    }
+}
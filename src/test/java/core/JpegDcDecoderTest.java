@@ -0,0 +1,201 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import hash.Hamming;
+import hash.Hasher;
+import hash.Hashers;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JpegDcDecoderTest {
+
+    private static BufferedImage pattern(int w, int h, int type) {
+        BufferedImage img = new BufferedImage(w, h, type);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int r = (x * 255) / w, g = (y * 255) / h, b = ((x / 37 + y / 23) % 2) * 200;
+                img.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return img;
+    }
+
+    private static byte[] jpeg(BufferedImage img, boolean progressive) throws Exception {
+        return jpeg(img, progressive, 0);
+    }
+
+    private static byte[] jpeg(BufferedImage img, boolean progressive, int restartInterval) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.9f);
+            if (progressive) param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            IIOMetadata meta = null;
+            if (restartInterval > 0) {
+                meta = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(img), param);
+                String format = "javax_imageio_jpeg_image_1.0";
+                IIOMetadataNode root = (IIOMetadataNode) meta.getAsTree(format);
+                IIOMetadataNode dri = new IIOMetadataNode("dri");
+                dri.setAttribute("interval", Integer.toString(restartInterval));
+                IIOMetadataNode markers = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+                markers.insertBefore(dri, markers.getFirstChild());
+                meta.setFromTree(format, root);
+            }
+            writer.write(null, new IIOImage(img, null, meta), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Mean luma of each 8x8 block of the fully decoded image, for comparison with the DC plane. */
+    private static int[] blockMeans(BufferedImage img) {
+        int bx = (img.getWidth() + 7) / 8, by = (img.getHeight() + 7) / 8;
+        int[] out = new int[bx * by];
+        for (int j = 0; j < by; j++) {
+            for (int i = 0; i < bx; i++) {
+                int sum = 0, n = 0;
+                for (int y = j * 8; y < Math.min(img.getHeight(), j * 8 + 8); y++) {
+                    for (int x = i * 8; x < Math.min(img.getWidth(), i * 8 + 8); x++) {
+                        // raw samples for gray: getRGB would apply the gray colour space's gamma
+                        sum += img.getType() == BufferedImage.TYPE_BYTE_GRAY
+                                ? img.getRaster().getSample(x, y, 0) : Luma.ofRgb(img.getRGB(x, y));
+                        n++;
+                    }
+                }
+                out[j * bx + i] = Math.round(sum / (float) n);
+            }
+        }
+        return out;
+    }
+
+    private static void assertCloseToDecoded(byte[] data, JpegDcDecoder.DcPlane plane, int tolerance) throws Exception {
+        int[] expected = blockMeans(ImageIO.read(new java.io.ByteArrayInputStream(data)));
+        assertEquals(expected.length, plane.luma().length);
+        int worst = 0;
+        for (int i = 0; i < expected.length; i++) worst = Math.max(worst, Math.abs(expected[i] - plane.luma()[i]));
+        assertTrue(worst <= tolerance, "DC plane differs from decoded block means by " + worst);
+    }
+
+    /**
+     * A baseline 4:2:0 JPEG yields one luma value per 8x8 block, matching the decoded block means.
+     */
+    @Test
+    void testBaselineColor() throws Exception {
+        byte[] data = jpeg(pattern(203, 141, BufferedImage.TYPE_INT_RGB), false);
+        JpegDcDecoder.DcPlane plane = JpegDcDecoder.decode(data);
+        assertNotNull(plane);
+        assertEquals(203, plane.width());
+        assertEquals(141, plane.height());
+        assertEquals(26, plane.blocksX());
+        assertEquals(18, plane.blocksY());
+        assertCloseToDecoded(data, plane, 6);
+    }
+
+    /**
+     * Progressive files are read from their DC scans only; with the refinement scan applied the
+     * result is identical to the baseline encoding of the same image.
+     */
+    @Test
+    void testProgressiveMatchesBaseline() throws Exception {
+        BufferedImage img = pattern(160, 120, BufferedImage.TYPE_INT_RGB);
+        JpegDcDecoder.DcPlane baseline = JpegDcDecoder.decode(jpeg(img, false));
+        JpegDcDecoder.DcPlane progressive = JpegDcDecoder.decode(jpeg(img, true));
+        assertNotNull(baseline);
+        assertNotNull(progressive);
+        assertArrayEquals(baseline.luma(), progressive.luma());
+    }
+
+    /**
+     * Restart markers reset the DC predictors; the plane must not change when they are present.
+     */
+    @Test
+    void testRestartIntervals() throws Exception {
+        BufferedImage img = pattern(150, 90, BufferedImage.TYPE_INT_RGB);
+        byte[] plain = jpeg(img, false);
+        byte[] restarts = jpeg(img, false, 3);
+        assertTrue(restarts.length > plain.length, "Expected RSTn markers in the stream");
+        assertArrayEquals(JpegDcDecoder.decode(plain).luma(), JpegDcDecoder.decode(restarts).luma());
+    }
+
+    /**
+     * Single-component (grayscale) files are supported.
+     */
+    @Test
+    void testGrayscale() throws Exception {
+        byte[] data = jpeg(pattern(64, 72, BufferedImage.TYPE_BYTE_GRAY), false);
+        JpegDcDecoder.DcPlane plane = JpegDcDecoder.decode(data);
+        assertNotNull(plane);
+        assertEquals(8, plane.blocksX());
+        assertEquals(9, plane.blocksY());
+        assertCloseToDecoded(data, plane, 6);
+    }
+
+    /**
+     * Non-JPEG input, truncated files and planes too coarse for the grid return null so callers
+     * fall back to a full decode.
+     */
+    @Test
+    void testUnsupportedReturnsNull() throws Exception {
+        assertNull(JpegDcDecoder.decode(Files.readAllBytes(Path.of("fixtures/drink-png.png"))));
+        assertNull(JpegDcDecoder.decode(new byte[0]));
+
+        byte[] data = jpeg(pattern(64, 64, BufferedImage.TYPE_INT_RGB), false);
+        assertNull(JpegDcDecoder.decode(Arrays.copyOf(data, data.length / 3)), "Truncated entropy data");
+
+        assertNull(JpegDcDecoder.lumaGrid(data, 32, 32, 32), "8x8 blocks cannot fill a 32x32 grid");
+        assertNotNull(JpegDcDecoder.lumaGrid(data, 8, 8, 8));
+    }
+
+    /**
+     * Measures and bounds the hash drift of the DC path against full-resolution decoding over
+     * the JPEG fixtures that are large enough to take it.
+     */
+    @Test
+    void testDcDriftOverFixtures() throws Exception {
+        List<Hasher> hashers = Hashers.parse("all");
+        List<Path> fixtures;
+        try (var files = Files.walk(Path.of("fixtures"))) {
+            fixtures = files.filter(p -> p.toString().matches("(?i).*\\.jpe?g")).sorted().toList();
+        }
+        int[] worst = new int[hashers.size()];
+        int[] total = new int[hashers.size()];
+        int used = 0;
+        for (Path p : fixtures) {
+            LumaGrid dc = JpegDcDecoder.lumaGrid(Files.readAllBytes(p), Hasher.GRID, Hasher.GRID, ImageLoader.HASH_MIN_SIDE / 8);
+            if (dc == null) continue;
+            used++;
+            BufferedImage full = ImageIO.read(p.toFile()); // the DC plane is not oriented
+            for (int i = 0; i < hashers.size(); i++) {
+                int d = Hamming.distance(hashers.get(i).hash(full), hashers.get(i).hash(dc));
+                worst[i] = Math.max(worst[i], d);
+                total[i] += d;
+            }
+        }
+        assertTrue(used >= 5, "Expected the larger fixtures to take the DC path, got " + used);
+        for (int i = 0; i < hashers.size(); i++) {
+            System.out.printf("DC path drift %s: mean %.2f bits, max %d bits over %d fixtures%n",
+                    hashers.get(i).name(), total[i] / (double) used, worst[i], used);
+            assertTrue(worst[i] <= 4, hashers.get(i).name() + " drifted " + worst[i] + " bits");
+        }
+    }
+}
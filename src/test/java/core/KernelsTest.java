@@ -0,0 +1,87 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class KernelsTest {
+
+    private static Kernels vector() {
+        assumeTrue(Kernels.vectorAvailable(), "Vector API kernels not built (-Psimd) or jdk.incubator.vector not resolved");
+        return Kernels.simd();
+    }
+
+    @Test
+    void activeKernelsFollowTheProperty() {
+        boolean simd = Boolean.getBoolean(Kernels.SIMD_PROPERTY) && Kernels.vectorAvailable();
+        assertEquals(simd, Kernels.ACTIVE != Kernels.scalar(), Kernels.ACTIVE.name());
+    }
+
+    @Test
+    void lumaIsBitIdentical() {
+        Kernels simd = vector(), scalar = Kernels.scalar();
+        Random rnd = new Random(1);
+        for (int n : new int[]{0, 1, 7, 8, 33, 1001}) {
+            int[] px = new int[n + 3];
+            for (int i = 0; i < px.length; i++) px[i] = rnd.nextInt();
+            int[] a = new int[n], b = new int[n];
+            scalar.lumaRgb(px, 3, a, n);
+            simd.lumaRgb(px, 3, b, n);
+            assertArrayEquals(a, b);
+            scalar.lumaArgb(px, 3, a, n);
+            simd.lumaArgb(px, 3, b, n);
+            assertArrayEquals(a, b);
+        }
+        // Every alpha against every luma level
+        int[] px = new int[256 * 256];
+        for (int a = 0; a < 256; a++) for (int g = 0; g < 256; g++) px[a * 256 + g] = a << 24 | g << 16 | g << 8 | g;
+        int[] a = new int[px.length], b = new int[px.length];
+        scalar.lumaArgb(px, 0, a, px.length);
+        simd.lumaArgb(px, 0, b, px.length);
+        assertArrayEquals(a, b);
+    }
+
+    @Test
+    void sumsAreBitIdentical() {
+        Kernels simd = vector(), scalar = Kernels.scalar();
+        int[] big = new int[300_000];
+        java.util.Arrays.fill(big, 255);
+        assertEquals(scalar.sum(big, 0, big.length), simd.sum(big, 0, big.length));
+        assertEquals(255L * 300_000, simd.sum(big, 0, big.length));
+
+        Random rnd = new Random(2);
+        int[] a = new int[200];
+        for (int i = 0; i < a.length; i++) a[i] = rnd.nextInt(256);
+        for (int from = 0; from < 20; from++) {
+            for (int to = from; to < a.length; to += 13) assertEquals(scalar.sum(a, from, to), simd.sum(a, from, to));
+        }
+
+        long[] src = new long[37], x = new long[45], y = new long[45];
+        for (int i = 0; i < src.length; i++) src[i] = rnd.nextInt(1 << 20);
+        scalar.addScaled(x, 5, src, 12345, src.length);
+        simd.addScaled(y, 5, src, 12345, src.length);
+        assertArrayEquals(x, y);
+    }
+
+    @Test
+    void multiplyIsBitIdentical() {
+        Kernels simd = vector(), scalar = Kernels.scalar();
+        Random rnd = new Random(3);
+        int[][] shapes = {{32, 32, 8, 32}, {8, 32, 8, 8}, {5, 7, 3, 9}, {16, 16, 16, 16}};
+        for (int[] s : shapes) {
+            int rows = s[0], inner = s[1], cols = s[2], stride = s[3];
+            double[] a = new double[rows * inner], b = new double[inner * stride];
+            for (int i = 0; i < a.length; i++) a[i] = rnd.nextDouble() - 0.5;
+            for (int i = 0; i < b.length; i++) b[i] = rnd.nextGaussian();
+            double[] x = new double[rows * cols], y = new double[rows * cols];
+            scalar.multiply(a, b, stride, x, rows, inner, cols);
+            simd.multiply(a, b, stride, y, rows, inner, cols);
+            for (int i = 0; i < x.length; i++) {
+                assertEquals(Double.doubleToRawLongBits(x[i]), Double.doubleToRawLongBits(y[i]), "element " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LumaTest {
+
+    private static BufferedImage randomImage(int w, int h, int type, long seed) {
+        Random rnd = new Random(seed);
+        BufferedImage img = new BufferedImage(w, h, type);
+        for (int y = 0; y < h; y++) for (int x = 0; x < w; x++) img.setRGB(x, y, rnd.nextInt(0x1000000));
+        return img;
+    }
+
+    private static BufferedImage copy(BufferedImage src, int type) {
+        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), type);
+        for (int y = 0; y < src.getHeight(); y++)
+            for (int x = 0; x < src.getWidth(); x++) dst.setRGB(x, y, src.getRGB(x, y));
+        return dst;
+    }
+
+    @Test
+    void lumaWeightsPreserveGray() {
+        for (int g = 0; g < 256; g++) assertEquals(g, Luma.of(g, g, g));
+        assertEquals(0, Luma.ofArgb(0x00ffffff), "Fully transparent pixels composite to black");
+    }
+
+    @Test
+    void uniformImageGivesUniformGrid() {
+        BufferedImage img = new BufferedImage(123, 77, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 77; y++) for (int x = 0; x < 123; x++) img.setRGB(x, y, 0x808080);
+        int[] grid = Luma.downscale(img, 32, 32);
+        for (int v : grid) assertEquals(128, v);
+    }
+
+    @Test
+    void exactHalvingAveragesTwoByTwoBlocks() {
+        BufferedImage img = new BufferedImage(4, 2, BufferedImage.TYPE_BYTE_GRAY);
+        int[] vals = {0, 100, 200, 255, 50, 50, 10, 20};
+        img.getRaster().setPixels(0, 0, 4, 2, vals);
+        int[] grid = Luma.downscale(img, 2, 1);
+        assertArrayEquals(new int[]{50, 121}, grid); // (0+100+50+50)/4, (200+255+10+20)/4 rounded
+    }
+
+    @Test
+    void upscalingReplicatesPixels() {
+        BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(0, 0, 0xffffff);
+        int[] grid = Luma.downscale(img, 9, 8);
+        for (int v : grid) assertEquals(255, v);
+    }
+
+    @Test
+    void rasterLayoutsAgreeWithGenericPath() {
+        BufferedImage rgb = randomImage(97, 61, BufferedImage.TYPE_INT_RGB, 1);
+        int[] expected = Luma.downscale(copy(rgb, BufferedImage.TYPE_4BYTE_ABGR), 32, 32); // getRGB fallback
+        assertArrayEquals(expected, Luma.downscale(rgb, 32, 32), "INT_RGB");
+        assertArrayEquals(expected, Luma.downscale(copy(rgb, BufferedImage.TYPE_INT_ARGB), 32, 32), "INT_ARGB");
+        assertArrayEquals(expected, Luma.downscale(copy(rgb, BufferedImage.TYPE_3BYTE_BGR), 32, 32), "3BYTE_BGR");
+    }
+
+    @Test
+    void subimageRasterHonoursOffsets() {
+        BufferedImage big = randomImage(80, 80, BufferedImage.TYPE_3BYTE_BGR, 2);
+        BufferedImage sub = big.getSubimage(13, 21, 40, 30);
+        assertArrayEquals(Luma.downscale(copy(sub, BufferedImage.TYPE_3BYTE_BGR), 8, 8),
+                Luma.downscale(sub, 8, 8));
+    }
+
+    @Test
+    void horizontalFlipCommutesWithDownscale() {
+        BufferedImage img = randomImage(101, 67, BufferedImage.TYPE_INT_RGB, 3);
+        BufferedImage flipped = new BufferedImage(101, 67, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 67; y++) for (int x = 0; x < 101; x++) flipped.setRGB(100 - x, y, img.getRGB(x, y));
+        int[] a = Luma.downscale(img, 32, 32);
+        int[] b = Luma.downscale(flipped, 32, 32);
+        for (int y = 0; y < 32; y++) for (int x = 0; x < 32; x++) assertEquals(a[y * 32 + x], b[y * 32 + 31 - x]);
+    }
+
+    @Test
+    void accumulatorRejectsIncompleteInput() {
+        Luma.Accumulator acc = new Luma.Accumulator(4, 4, 2, 2);
+        acc.addRow(new int[]{1, 2, 3, 4}, 0);
+        assertThrows(IllegalStateException.class, () -> acc.finish(new int[4]));
+        assertThrows(IllegalArgumentException.class, () -> new Luma.Accumulator(0, 4, 2, 2));
+    }
+
+    @Test
+    void rowBinningMatchesPixelByPixelAccumulation() {
+        Random rnd = new Random(6);
+        int[][] shapes = {{7, 5, 3, 2}, {100, 37, 9, 8}, {31, 31, 32, 32}, {5, 3, 17, 11}, {1000, 3, 32, 2}, {64, 64, 32, 32}};
+        for (int[] s : shapes) {
+            int srcW = s[0], srcH = s[1], w = s[2], h = s[3];
+            int[] luma = new int[srcW * srcH];
+            for (int i = 0; i < luma.length; i++) luma[i] = rnd.nextInt(256);
+            Luma.Accumulator rows = new Luma.Accumulator(srcW, srcH, w, h);
+            Luma.Accumulator pixels = new Luma.Accumulator(srcW, srcH, w, h);
+            for (int y = 0; y < srcH; y++) rows.addRow(luma, y * srcW);
+            for (int v : luma) pixels.add(v);
+            int[] a = new int[w * h], b = new int[w * h];
+            rows.finish(a);
+            pixels.finish(b);
+            assertArrayEquals(b, a, srcW + "x" + srcH + " -> " + w + "x" + h);
+        }
+    }
+
+    @Test
+    void gridResampleMatchesDirectDownscaleForExactMultiples() {
+        BufferedImage img = randomImage(64, 64, BufferedImage.TYPE_INT_RGB, 4);
+        LumaGrid grid = LumaGrid.of(img, 32, 32);
+        assertSame(grid.px(), grid.resample(32, 32));
+        // 64 -> 32 -> 8 rounds twice, so allow one level of rounding difference
+        int[] viaGrid = grid.resample(8, 8);
+        int[] direct = Luma.downscale(img, 8, 8);
+        for (int i = 0; i < 64; i++) assertEquals(direct[i], viaGrid[i], 1);
+    }
+
+    /**
+     * Orienting the 32x32 grid gives exactly the grid of the rotated image, for all 8 EXIF
+     * orientations, non-square sources and the raster types decoders produce.
+     */
+    @Test
+    void testGridOrientationMatchesRotateFirst() {
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB}) {
+            BufferedImage img = randomImage(203, 117, type, 13);
+            LumaGrid grid = LumaGrid.of(img, 32, 32);
+            for (int o = 1; o <= 8; o++) {
+                LumaGrid expected = LumaGrid.of(Exif.transform(img, o), 32, 32);
+                assertArrayEquals(expected.px(), grid.orient(o).px(), "type " + type + ", orientation " + o);
+            }
+        }
+        LumaGrid wide = new LumaGrid(3, 2, new int[]{1, 2, 3, 4, 5, 6});
+        LumaGrid rotated = wide.orient(6);
+        assertEquals(2, rotated.width());
+        assertEquals(3, rotated.height());
+        assertArrayEquals(new int[]{4, 1, 5, 2, 6, 3}, rotated.px(), "90 degrees clockwise");
+        assertSame(wide, wide.orient(1));
+    }
+}
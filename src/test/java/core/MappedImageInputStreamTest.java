@@ -0,0 +1,91 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedImageInputStreamTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Byte, bulk, seek and multi-byte reads behave like ImageIO's own file stream.
+     */
+    @Test
+    void testReadsMatchFileStream() throws Exception {
+        Path file = tempDir.resolve("data.bin");
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 31);
+        Files.write(file, data);
+
+        try (ImageInputStream mapped = MappedImageInputStream.open(file);
+             ImageInputStream plain = new FileImageInputStream(file.toFile())) {
+            assertInstanceOf(MappedImageInputStream.class, mapped);
+            assertEquals(data.length, mapped.length());
+            for (ImageInputStream in : new ImageInputStream[]{mapped, plain}) {
+                assertEquals(data[0] & 0xff, in.read());
+                byte[] chunk = new byte[100];
+                in.readFully(chunk);
+                assertEquals(data[100], chunk[99]);
+                in.seek(9_990);
+                in.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+                in.readInt();
+                assertEquals(6, in.read(new byte[50], 0, 50), "Short read at the end");
+                assertEquals(-1, in.read());
+                in.seek(5);
+                assertEquals(data[5] & 0xff, (int) in.readBits(8), "Bit reads");
+            }
+            mapped.seek(1234);
+            plain.seek(1234);
+            mapped.setByteOrder(ByteOrder.BIG_ENDIAN);
+            plain.setByteOrder(ByteOrder.BIG_ENDIAN);
+            assertEquals(plain.readLong(), mapped.readLong());
+        }
+    }
+
+    /**
+     * Decoding through the mapping gives the same pixels as ImageIO.read(File).
+     */
+    @Test
+    void testDecodeMatchesImageIO() throws Exception {
+        for (String name : new String[]{"fixtures/drink.jpg", "fixtures/drink-png.png"}) {
+            Path p = Path.of(name);
+            BufferedImage expected = ImageIO.read(p.toFile());
+            BufferedImage mapped, inMemory;
+            try (ImageInputStream in = MappedImageInputStream.open(p)) {
+                mapped = ImageIO.read(in);
+            }
+            inMemory = ImageIO.read(MappedImageInputStream.of(Files.readAllBytes(p)));
+            for (BufferedImage img : new BufferedImage[]{mapped, inMemory}) {
+                assertEquals(expected.getWidth(), img.getWidth());
+                assertEquals(expected.getHeight(), img.getHeight());
+                assertEquals(expected.getRGB(123, 45), img.getRGB(123, 45), name);
+            }
+        }
+    }
+
+    /**
+     * Empty files cannot be mapped and use the buffered fallback; closed streams reject reads.
+     */
+    @Test
+    void testFallbackAndClose() throws Exception {
+        Path empty = Files.createFile(tempDir.resolve("empty.jpg"));
+        try (ImageInputStream in = MappedImageInputStream.open(empty)) {
+            assertFalse(in instanceof MappedImageInputStream);
+            assertEquals(-1, in.read());
+        }
+        ImageInputStream in = MappedImageInputStream.of(new byte[]{1, 2, 3});
+        in.close();
+        assertThrows(java.io.IOException.class, in::read);
+    }
+}
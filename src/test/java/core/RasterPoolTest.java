@@ -0,0 +1,76 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RasterPoolTest {
+
+    /**
+     * Images are bucketed by type and rounded size, and a released raster comes back for the
+     * next request of the same bucket.
+     */
+    @Test
+    void testBucketsAndReuse() {
+        RasterPool pool = new RasterPool(64L << 20);
+        BufferedImage a = pool.acquire(BufferedImage.TYPE_3BYTE_BGR, 270, 300);
+        assertEquals(512, a.getWidth());
+        assertEquals(512, a.getHeight());
+
+        pool.release(a.getSubimage(0, 0, 270, 300));
+        assertEquals(512L * 512 * 3, pool.retainedBytes());
+        BufferedImage b = pool.acquire(BufferedImage.TYPE_3BYTE_BGR, 400, 260);
+        assertSame(a.getRaster(), b.getRaster());
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, b.getType());
+        assertEquals(0, pool.retainedBytes());
+
+        assertNotSame(b.getRaster(), pool.acquire(BufferedImage.TYPE_INT_RGB, 400, 260).getRaster(), "Other type, other bucket");
+    }
+
+    /**
+     * The byte cap, double releases and foreign images are all handled.
+     */
+    @Test
+    void testCapAndForeignImages() {
+        RasterPool pool = new RasterPool(256L * 256 * 4);
+        BufferedImage a = pool.acquire(BufferedImage.TYPE_INT_RGB, 10, 10);
+        BufferedImage b = pool.acquire(BufferedImage.TYPE_INT_RGB, 10, 10);
+        pool.release(a);
+        pool.release(a);
+        assertEquals(256L * 256 * 4, pool.retainedBytes(), "A double release is ignored");
+        pool.release(b);
+        assertEquals(256L * 256 * 4, pool.retainedBytes(), "Over the cap: dropped");
+
+        pool.release(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+        pool.release(new BufferedImage(256, 256, BufferedImage.TYPE_BYTE_INDEXED));
+        assertEquals(256L * 256 * 4, pool.retainedBytes(), "Unaligned or indexed images are not taken");
+        assertThrows(IllegalArgumentException.class, () -> pool.acquire(BufferedImage.TYPE_BYTE_BINARY, 1, 1));
+    }
+
+    /**
+     * Decoding into a recycled raster that still holds another image gives the same pixels as a
+     * decode into a fresh one.
+     */
+    @Test
+    void testDecodeIntoRecycledRaster() throws Exception {
+        byte[] drink = Files.readAllBytes(Path.of("fixtures/drink.jpg"));
+        byte[] other = Files.readAllBytes(Path.of("fixtures/similar-unrelated-drink.jpg"));
+
+        BufferedImage first = ImageLoader.decodeForHash(drink, Path.of("drink.jpg"), ImageLoader.HASH_MIN_SIDE, Long.MAX_VALUE);
+        int[] expected = first.getRGB(0, 0, first.getWidth(), first.getHeight(), null, 0, first.getWidth());
+        ImageLoader.recycle(first);
+
+        BufferedImage second = ImageLoader.decodeForHash(other, Path.of("other.jpg"), ImageLoader.HASH_MIN_SIDE, Long.MAX_VALUE);
+        ImageLoader.recycle(second);
+
+        BufferedImage again = ImageLoader.decodeForHash(drink, Path.of("drink.jpg"), ImageLoader.HASH_MIN_SIDE, Long.MAX_VALUE);
+        assertEquals(first.getWidth(), again.getWidth());
+        assertArrayEquals(expected, again.getRGB(0, 0, again.getWidth(), again.getHeight(), null, 0, again.getWidth()));
+        assertArrayEquals(LumaGrid.of(first, 32, 32).px(), LumaGrid.of(again, 32, 32).px());
+        ImageLoader.recycle(again);
+    }
+}
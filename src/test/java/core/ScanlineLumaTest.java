@@ -0,0 +1,134 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanlineLumaTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static BufferedImage noise(int w, int h, int type, long seed) {
+        Random rnd = new Random(seed);
+        BufferedImage img = new BufferedImage(w, h, type);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                // smooth gradient plus noise, so every PNG filter type gets used
+                int base = (x * 255 / w + y * 128 / h) & 0xff;
+                int n = rnd.nextInt(40);
+                int a = type == BufferedImage.TYPE_INT_ARGB ? (x * 7 + y) & 0xff : 0xff;
+                img.setRGB(x, y, a << 24 | Math.min(255, base + n) << 16 | (255 - base) << 8 | (n * 5) & 0xff);
+            }
+        }
+        return img;
+    }
+
+    private static byte[] encode(BufferedImage img, String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(img, format, out), "No " + format + " writer for type " + img.getType());
+        return out.toByteArray();
+    }
+
+    private static void assertMatchesImageIO(byte[] data, int tolerance, String what) throws Exception {
+        LumaGrid streamed = ScanlineLuma.lumaGrid(ByteBuffer.wrap(data), 32, 32);
+        assertNotNull(streamed, what + " should be supported");
+        int[] expected = LumaGrid.of(ImageIO.read(new java.io.ByteArrayInputStream(data)), 32, 32).px();
+        int worst = 0;
+        for (int i = 0; i < expected.length; i++) worst = Math.max(worst, Math.abs(expected[i] - streamed.px()[i]));
+        assertTrue(worst <= tolerance, what + ": differs from the ImageIO path by " + worst);
+    }
+
+    /**
+     * PNG colour types and bit depths give the same grid as decoding with ImageIO.
+     */
+    @Test
+    void testPngMatchesImageIO() throws Exception {
+        assertMatchesImageIO(encode(noise(203, 117, BufferedImage.TYPE_INT_RGB, 1), "png"), 0, "RGB 8");
+        assertMatchesImageIO(encode(noise(150, 90, BufferedImage.TYPE_INT_ARGB, 2), "png"), 0, "RGBA 8");
+        assertMatchesImageIO(encode(noise(99, 101, BufferedImage.TYPE_BYTE_GRAY, 3), "png"), 0, "gray 8");
+        assertMatchesImageIO(encode(noise(77, 64, BufferedImage.TYPE_BYTE_INDEXED, 4), "png"), 0, "palette 8");
+        assertMatchesImageIO(encode(noise(77, 65, BufferedImage.TYPE_BYTE_BINARY, 5), "png"), 0, "1-bit");
+
+        BufferedImage rgb16 = new BufferedImage(
+                new java.awt.image.ComponentColorModel(java.awt.color.ColorSpace.getInstance(java.awt.color.ColorSpace.CS_sRGB),
+                        false, false, java.awt.Transparency.OPAQUE, java.awt.image.DataBuffer.TYPE_USHORT),
+                java.awt.image.Raster.createInterleavedRaster(java.awt.image.DataBuffer.TYPE_USHORT, 64, 48, 3, null), false, null);
+        WritableRaster r = rgb16.getRaster();
+        for (int y = 0; y < 48; y++) for (int x = 0; x < 64; x++) r.setPixel(x, y, new int[]{x * 1000, y * 1300, (x * y * 37) & 0xffff});
+        assertMatchesImageIO(encode(rgb16, "png"), 1, "RGB 16");
+        assertMatchesImageIO(Files.readAllBytes(Path.of("fixtures/drink-png.png")), 0, "fixture");
+    }
+
+    /**
+     * 24-bit, 8-bit and 1-bit BMPs, bottom-up and top-down, through a memory-mapped file.
+     */
+    @Test
+    void testBmpMatchesImageIO() throws Exception {
+        byte[] bgr = encode(noise(203, 117, BufferedImage.TYPE_3BYTE_BGR, 6), "bmp");
+        assertMatchesImageIO(bgr, 0, "BMP 24");
+        assertMatchesImageIO(encode(noise(50, 41, BufferedImage.TYPE_BYTE_INDEXED, 7), "bmp"), 0, "BMP 8");
+        assertMatchesImageIO(encode(noise(50, 41, BufferedImage.TYPE_BYTE_BINARY, 8), "bmp"), 0, "BMP 1");
+
+        // Same pixels stored top-down: negative height, rows reversed
+        ByteBuffer b = ByteBuffer.wrap(bgr.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        int offset = b.getInt(10), w = b.getInt(18), h = b.getInt(22), stride = (w * 24 + 31) / 32 * 4;
+        byte[] topDown = bgr.clone();
+        ByteBuffer.wrap(topDown).order(ByteOrder.LITTLE_ENDIAN).putInt(22, -h);
+        for (int y = 0; y < h; y++) System.arraycopy(bgr, offset + y * stride, topDown, offset + (h - 1 - y) * stride, stride);
+        Path file = tempDir.resolve("top-down.bmp");
+        Files.write(file, topDown);
+        assertArrayEquals(ScanlineLuma.lumaGrid(ByteBuffer.wrap(bgr), 32, 32).px(), ScanlineLuma.lumaGrid(file, 32, 32).px());
+    }
+
+    /**
+     * Interlaced PNGs, truncated data and other formats are left to ImageIO.
+     */
+    @Test
+    void testUnsupportedReturnsNull() throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT); // Adam7
+            writer.write(null, new IIOImage(noise(40, 40, BufferedImage.TYPE_INT_RGB, 9), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        assertNull(ScanlineLuma.lumaGrid(ByteBuffer.wrap(out.toByteArray()), 32, 32), "Interlaced");
+
+        byte[] png = encode(noise(80, 80, BufferedImage.TYPE_INT_RGB, 10), "png");
+        assertNull(ScanlineLuma.lumaGrid(ByteBuffer.wrap(Arrays.copyOf(png, png.length / 2)), 32, 32), "Truncated");
+        byte[] bmp = encode(noise(80, 80, BufferedImage.TYPE_3BYTE_BGR, 11), "bmp");
+        assertNull(ScanlineLuma.lumaGrid(ByteBuffer.wrap(Arrays.copyOf(bmp, bmp.length / 2)), 32, 32), "Truncated BMP");
+        assertNull(ScanlineLuma.lumaGrid(ByteBuffer.wrap(Files.readAllBytes(Path.of("fixtures/drink.jpg"))), 32, 32));
+    }
+
+    @Test
+    void filesTooLargeToMapAreLeftToTheFallback() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(noise(16, 16, BufferedImage.TYPE_INT_RGB, 3), "png", png);
+        Path p = Files.write(tempDir.resolve("huge.png"), png.toByteArray());
+        try (var raf = new java.io.RandomAccessFile(p.toFile(), "rw")) {
+            raf.setLength(ScanlineLuma.MAX_MAP + 1); // sparse: no disk space needed
+        }
+        assertNull(ScanlineLuma.lumaGrid(p, 8, 8));
+    }
+}
@@ -1,6 +1,7 @@
 package hash;
 
 import core.Gray;
+import core.LumaGrid;
 import core.Resize;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -10,6 +11,7 @@ import org.mockito.Mockito;
 
 import java.awt.image.BufferedImage;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -117,4 +119,16 @@ class DHashTest {
         }
         return image;
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("dHash16 of a dark-to-light gradient sets all 256 bits")
+    void testWideHashWithGradient() {
+        DHash wide = new DHash(16);
+        assertEquals("dHash16", wide.name());
+        int[] px = new int[32 * 32];
+        for (int i = 0; i < px.length; i++) px[i] = 255 - (i % 32) * 8;
+        LumaGrid grid = new LumaGrid(32, 32, px);
+        assertArrayEquals(new long[]{-1L, -1L, -1L, -1L}, wide.hashWide(grid));
+        assertEquals(-1L, wide.hash(grid));
+    }
+}
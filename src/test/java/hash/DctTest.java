@@ -0,0 +1,90 @@
+package hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DctTest {
+
+    /** The original O(N^4) transform, kept here as the reference. */
+    private static double[][] naiveDct(double[][] f) {
+        int N = f.length;
+        double[][] F = new double[N][N];
+        for (int u = 0; u < N; u++) {
+            for (int v = 0; v < N; v++) {
+                double sum = 0.0;
+                for (int x = 0; x < N; x++) {
+                    for (int y = 0; y < N; y++) {
+                        sum += f[x][y]
+                                * Math.cos(((2 * x + 1) * u * Math.PI) / (2 * N))
+                                * Math.cos(((2 * y + 1) * v * Math.PI) / (2 * N));
+                    }
+                }
+                double cu = (u == 0) ? Math.sqrt(1.0 / N) : Math.sqrt(2.0 / N);
+                double cv = (v == 0) ? Math.sqrt(1.0 / N) : Math.sqrt(2.0 / N);
+                F[u][v] = cu * cv * sum;
+            }
+        }
+        return F;
+    }
+
+    private static double[][] randomBlock(int n, long seed) {
+        Random rnd = new Random(seed);
+        double[][] f = new double[n][n];
+        for (int y = 0; y < n; y++) for (int x = 0; x < n; x++) f[y][x] = rnd.nextDouble();
+        return f;
+    }
+
+    private static double[] flatten(double[][] f) {
+        int n = f.length;
+        double[] out = new double[n * n];
+        for (int y = 0; y < n; y++) System.arraycopy(f[y], 0, out, y * n, n);
+        return out;
+    }
+
+    @Test
+    void fullTransformMatchesNaiveReference() {
+        double[][] f = randomBlock(32, 42);
+        double[][] expected = naiveDct(f);
+        double[] actual = new Dct(32).forward(flatten(f));
+        for (int u = 0; u < 32; u++) {
+            for (int v = 0; v < 32; v++) {
+                assertEquals(expected[u][v], actual[u * 32 + v], 1e-12, "coefficient (" + u + "," + v + ")");
+            }
+        }
+    }
+
+    @Test
+    void partialTransformMatchesTopLeftOfFullTransform() {
+        Dct dct = new Dct(32);
+        double[] in = flatten(randomBlock(32, 7));
+        double[] full = dct.forward(in);
+        double[] low = new double[64];
+        dct.forward(in, low, 8);
+        for (int u = 0; u < 8; u++) {
+            for (int v = 0; v < 8; v++) {
+                assertEquals(full[u * 32 + v], low[u * 8 + v], 0.0);
+            }
+        }
+    }
+
+    @Test
+    void constantInputHasOnlyDcEnergy() {
+        double[] in = new double[16 * 16];
+        java.util.Arrays.fill(in, 1.0);
+        double[] out = new Dct(16).forward(in);
+        assertEquals(16.0, out[0], 1e-12);
+        for (int i = 1; i < out.length; i++) assertEquals(0.0, out[i], 1e-12);
+    }
+
+    @Test
+    void rejectsInvalidBlockSize() {
+        Dct dct = new Dct(8);
+        double[] in = new double[64];
+        assertThrows(IllegalArgumentException.class, () -> dct.forward(in, new double[81], 9));
+        assertThrows(IllegalArgumentException.class, () -> dct.forward(in, new double[1], 0));
+        assertThrows(IllegalArgumentException.class, () -> new Dct(0));
+    }
+}
@@ -3,6 +3,7 @@ package hash;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Unit tests for the {@link Hamming} class.
@@ -48,4 +49,11 @@ class HammingTest {
         // XOR is all 64 bits set to 1.
         assertEquals(64, Hamming.distance(Long.MIN_VALUE, Long.MAX_VALUE), "Distance between Long.MIN_VALUE and Long.MAX_VALUE should be 64.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWideDistanceSumsWords() {
+        assertEquals(0, Hamming.distance(new long[]{5L, -1L}, new long[]{5L, -1L}));
+        assertEquals(64 + 1, Hamming.distance(new long[]{0L, 0L, 2L}, new long[]{-1L, 0L, 0L}));
+        assertThrows(IllegalArgumentException.class, () -> Hamming.distance(new long[1], new long[2]));
+    }
+}
@@ -0,0 +1,86 @@
+package hash;
+
+import core.ImageLoader;
+import core.LumaGrid;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashersTest {
+
+    @Test
+    void parsesListsAndAll() {
+        assertEquals(List.of("pHash"), names(Hashers.parse("phash")));
+        assertEquals(List.of("dHash", "aHash"), names(Hashers.parse("DHash, ahash,dhash")));
+        assertEquals(List.of("aHash", "dHash", "pHash"), names(Hashers.parse("all")));
+        assertThrows(IllegalArgumentException.class, () -> Hashers.parse("phash,nope"));
+        assertThrows(IllegalArgumentException.class, () -> Hashers.parse(""));
+    }
+
+    @Test
+    void sharedGridGivesSameHashesAsImageEntryPoint() {
+        Random rnd = new Random(5);
+        BufferedImage img = new BufferedImage(150, 90, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 90; y++) for (int x = 0; x < 150; x++) img.setRGB(x, y, rnd.nextInt(0x1000000));
+
+        LumaGrid grid = LumaGrid.of(img, Hasher.GRID, Hasher.GRID);
+        for (Hasher h : Hashers.parse("all")) {
+            assertEquals(h.hash(img), h.hash(grid), h.name());
+        }
+    }
+
+    private static List<String> names(List<Hasher> hs) {
+        return hs.stream().map(Hasher::name).toList();
+    }
+
+    @Test
+    void wideNamesSelectGridSize() {
+        assertEquals(256, Hashers.byName("dhash16").bits());
+        assertEquals("dHash16", Hashers.byName("dHash16").name());
+        assertEquals("pHash16", Hashers.byName("PHASH16").name());
+        assertEquals("dHash", Hashers.byName("dhash8").name());
+        assertNull(Hashers.byName("dhash12"), "144 bits is not a whole number of words");
+        assertNull(Hashers.byName("phash64"));
+        assertNull(Hashers.byName("dhashx"));
+        assertEquals(List.of("pHash", "pHash16"), names(Hashers.parse("phash,phash16")));
+    }
+
+    @Test
+    void narrowHashersAreTheirOwnSingleWord() {
+        Random rnd = new Random(6);
+        int[] px = new int[Hasher.GRID * Hasher.GRID];
+        for (int i = 0; i < px.length; i++) px[i] = rnd.nextInt(256);
+        LumaGrid grid = new LumaGrid(Hasher.GRID, Hasher.GRID, px);
+        for (Hasher h : Hashers.parse("all,dhash16,phash16")) {
+            long[] wide = h.hashWide(grid);
+            assertEquals(h.bits() / 64, wide.length, h.name());
+            assertEquals(wide[0], h.hash(grid), h.name());
+        }
+    }
+
+    /** Every hasher's variants are exactly the hashes of the oriented grids, pHash's included. */
+    @Test
+    void dihedralVariantsMatchOrientedGrids() throws Exception {
+        Random rnd = new Random(7);
+        List<LumaGrid> grids = new ArrayList<>();
+        for (int k = 0; k < 20; k++) {
+            int[] px = new int[Hasher.GRID * Hasher.GRID];
+            for (int i = 0; i < px.length; i++) px[i] = rnd.nextInt(256);
+            grids.add(new LumaGrid(Hasher.GRID, Hasher.GRID, px));
+        }
+        grids.add(LumaGrid.of(ImageLoader.load(Path.of("fixtures/drink.jpg")), Hasher.GRID, Hasher.GRID));
+        grids.add(LumaGrid.of(ImageLoader.load(Path.of("fixtures/cat.jpg")), Hasher.GRID, Hasher.GRID));
+        for (Hasher h : Hashers.parse("all")) {
+            for (LumaGrid g : grids) {
+                long[] variants = h.dihedral(g);
+                for (int o = 1; o <= 8; o++) assertEquals(h.hash(g.orient(o)), variants[o - 1], h.name() + " orientation " + o);
+            }
+        }
+    }
+}
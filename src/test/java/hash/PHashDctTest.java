@@ -3,10 +3,17 @@ package hash;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import core.ImageLoader;
+import core.LumaGrid;
+
 import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PHashDctTest {
 
@@ -97,4 +104,62 @@ public class PHashDctTest {
         long actualHash = pHashDct.hash(grayImage);
         assertEquals(expectedHash, actualHash);
     }
-}
\ No newline at end of file
+
+    /**
+     * Golden hashes of the fixtures. Any change to preprocessing or to the DCT that alters
+     * a single bit shows up here.
+     */
+    @Test
+    public void testHash_fixturesMatchGoldenValues() throws Exception {
+        Map<String, String> golden = Map.ofEntries(
+                Map.entry("fixtures/cat.jpg", "9e96f63d38fa0903"),
+                Map.entry("fixtures/drink-270cw.jpg", "6eb1d47a8cc4f8bf"), // EXIF-rotated copy of drink.jpg
+                Map.entry("fixtures/drink-compressed-heavily.jpg", "6eb1d46a8cd0f8bf"),
+                Map.entry("fixtures/drink-compressed-lightly.jpg", "6eb1d47a8cc4f8bf"),
+                Map.entry("fixtures/drink-hue-shift.jpg", "6eb1d47a8cc4f8bf"),
+                Map.entry("fixtures/drink-png.png", "6eb1d47a8cc4f8bf"),
+                Map.entry("fixtures/drink-saturation-watermark-scribbled.jpg", "6eb1d46a8cc0f8bf"),
+                Map.entry("fixtures/drink.jpg", "6eb1d47a8cc4f8bf"),
+                Map.entry("fixtures/similar-unrelated-drink.jpg", "34f3180bc9adc705"),
+                Map.entry("fixtures/true-grayscale/200x200-black.jpg", "0"),
+                Map.entry("fixtures/true-grayscale/200x200-blue.jpg", "1")
+        );
+        for (var e : golden.entrySet()) {
+            BufferedImage img = ImageLoader.load(Path.of(e.getKey()));
+            assertEquals(e.getValue(), Long.toHexString(pHashDct.hash(img)), e.getKey());
+        }
+    }
+
+    /** The 256-bit variant keeps near-duplicates much closer than an unrelated look-alike. */
+    @Test
+    public void testWideHash_separatesNearDuplicatesFromLookalike() throws Exception {
+        Hasher wide = new PHashDct(16);
+        assertEquals("pHash16", wide.name());
+        assertEquals(256, wide.bits());
+        LumaGrid base = LumaGrid.of(ImageLoader.load(Path.of("fixtures/drink.jpg")), Hasher.GRID, Hasher.GRID);
+        long[] h = wide.hashWide(base);
+        int worstCopy = 0;
+        for (String f : new String[]{"drink-compressed-heavily.jpg", "drink-hue-shift.jpg", "drink-saturation-watermark-scribbled.jpg"}) {
+            LumaGrid g = LumaGrid.of(ImageLoader.load(Path.of("fixtures", f)), Hasher.GRID, Hasher.GRID);
+            worstCopy = Math.max(worstCopy, Hamming.distance(h, wide.hashWide(g)));
+        }
+        LumaGrid other = LumaGrid.of(ImageLoader.load(Path.of("fixtures/similar-unrelated-drink.jpg")), Hasher.GRID, Hasher.GRID);
+        int unrelated = Hamming.distance(h, wide.hashWide(other));
+        assertTrue(worstCopy * 4 < unrelated, worstCopy + " vs " + unrelated);
+        assertThrows(IllegalArgumentException.class, () -> new PHashDct(12));
+    }
+
+    /** A copy rotated in its pixels (no EXIF to undo it) hashes to one of the original's variants. */
+    @Test
+    public void testDihedral_containsHashOfPixelRotatedCopy() throws Exception {
+        BufferedImage img = ImageLoader.load(Path.of("fixtures/drink.jpg"));
+        int w = img.getWidth(), h = img.getHeight();
+        BufferedImage rotated = new BufferedImage(h, w, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < h; y++) for (int x = 0; x < w; x++) rotated.setRGB(h - 1 - y, x, img.getRGB(x, y));
+
+        long[] variants = pHashDct.dihedral(LumaGrid.of(img, Hasher.GRID, Hasher.GRID));
+        long copy = pHashDct.hash(rotated);
+        assertNotEquals(variants[0], copy);
+        assertTrue(java.util.Arrays.stream(variants).anyMatch(v -> v == copy), "rotated copy among the variants");
+    }
+}
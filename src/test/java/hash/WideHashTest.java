@@ -0,0 +1,33 @@
+package hash;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WideHashTest {
+
+    @Test
+    void hexRoundTripsWithFixedWidth() {
+        WideHash h = new WideHash(new long[]{1L, -1L, 0L, 0x00ff00ff00ff00ffL});
+        String hex = h.toString();
+        assertEquals(64, hex.length());
+        assertEquals("0000000000000001ffffffffffffffff000000000000000000ff00ff00ff00ff", hex);
+        assertEquals(h, WideHash.parse(hex));
+        assertEquals(h.hashCode(), WideHash.parse(hex).hashCode());
+        assertEquals(256, h.bits());
+    }
+
+    @Test
+    void rejectsMalformedValues() {
+        assertThrows(NumberFormatException.class, () -> WideHash.parse("123"));
+        assertThrows(NumberFormatException.class, () -> WideHash.parse(""));
+        assertThrows(NumberFormatException.class, () -> WideHash.parse("zzzzzzzzzzzzzzzz"));
+        assertThrows(IllegalArgumentException.class, () -> new WideHash(new long[0]));
+    }
+
+    @Test
+    void distanceIsWordwiseHamming() {
+        WideHash a = new WideHash(new long[]{0L, 0L}), b = new WideHash(new long[]{7L, 1L << 63});
+        assertEquals(4, a.distance(b));
+    }
+}
@@ -105,4 +105,14 @@ class BKTreeIndexTest {
         List<String> results = index.withinHamming(1000L, 1);
         assertTrue(results.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWithinHammingAny_UnionsQueriesOnce() {
+        BKTreeIndex index = new BKTreeIndex();
+        index.add(0b0000L, "zero");
+        index.add(0b1111L, "fifteen");
+        index.add(0b0001L, "one");
+        assertEquals(List.of("zero", "one", "fifteen"), index.withinHammingAny(new long[]{0L, 0b1111L, 0L}, 1));
+        assertTrue(index.withinHammingAny(new long[0], 5).isEmpty());
+    }
+}
@@ -0,0 +1,69 @@
+package index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatBKTreeIndexTest {
+
+    private FlatBKTreeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FlatBKTreeIndex();
+    }
+
+    @Test
+    void testWithinHamming_EmptyTree() {
+        assertTrue(index.withinHamming(12345L, 2).isEmpty());
+    }
+
+    @Test
+    void testDuplicateHashesShareOneNode() {
+        index.add(0b101010, "id1");
+        index.add(0b101010, "id2");
+        index.add(0b101011, "id3");
+
+        assertEquals(2, index.nodeCount());
+        assertEquals(3, index.size());
+        assertEquals(new HashSet<>(List.of("id1", "id2")), new HashSet<>(index.withinHamming(0b101010, 0)));
+        assertEquals(3, index.withinHamming(0b101010, 1).size());
+    }
+
+    @Test
+    void testAddAfterQueryIsVisible() {
+        index.add(0L, "a");
+        assertEquals(List.of("a"), index.withinHamming(0L, 64));
+        index.add(-1L, "b");
+        assertEquals(new HashSet<>(List.of("a", "b")), new HashSet<>(index.withinHamming(0L, 64)));
+    }
+
+    /** Randomised cross-check against the map-based tree, including near-duplicate clusters. */
+    @Test
+    void testSameResultsAsBKTreeIndex() {
+        Random rnd = new Random(11);
+        BKTreeIndex reference = new BKTreeIndex();
+        long[] seeds = new long[50];
+        for (int i = 0; i < seeds.length; i++) seeds[i] = rnd.nextLong();
+        for (int i = 0; i < 5000; i++) {
+            long h = seeds[rnd.nextInt(seeds.length)];
+            for (int f = rnd.nextInt(8); f > 0; f--) h ^= 1L << rnd.nextInt(64);
+            reference.add(h, "id" + i);
+            index.add(h, "id" + i);
+        }
+        for (int q = 0; q < 200; q++) {
+            long h = seeds[rnd.nextInt(seeds.length)] ^ (1L << rnd.nextInt(64));
+            for (int r : new int[]{0, 1, 3, 6, 10}) {
+                List<String> expected = reference.withinHamming(h, r);
+                List<String> actual = index.withinHamming(h, r);
+                assertEquals(expected.size(), actual.size(), "radius " + r);
+                assertEquals(new HashSet<>(expected), new HashSet<>(actual), "radius " + r);
+            }
+        }
+    }
+}
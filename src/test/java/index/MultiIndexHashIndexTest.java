@@ -0,0 +1,76 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiIndexHashIndexTest {
+
+    @Test
+    void testWithinHamming_EmptyIndex() {
+        assertTrue(new MultiIndexHashIndex().withinHamming(42L, 10).isEmpty());
+    }
+
+    @Test
+    void testMatchesAcrossSubstringBoundaries() {
+        MultiIndexHashIndex index = new MultiIndexHashIndex(4);
+        // one flip in every 16-bit substring: no substring matches exactly, distance 4
+        long flipped = (1L) | (1L << 16) | (1L << 32) | (1L << 48);
+        index.add(0L, "zero");
+        index.add(flipped, "four");
+        assertEquals(List.of("zero"), index.withinHamming(0L, 3));
+        assertEquals(new HashSet<>(List.of("zero", "four")), new HashSet<>(index.withinHamming(0L, 4)));
+    }
+
+    @Test
+    void testDuplicatesReportedOnce() {
+        MultiIndexHashIndex index = new MultiIndexHashIndex(8);
+        index.add(5L, "a");
+        index.add(5L, "b");
+        assertEquals(2, index.withinHamming(5L, 20).size());
+    }
+
+    @Test
+    void testRejectsInvalidSubstringCount() {
+        assertThrows(IllegalArgumentException.class, () -> new MultiIndexHashIndex(1));
+        assertThrows(IllegalArgumentException.class, () -> new MultiIndexHashIndex(65));
+    }
+
+    @Test
+    void testForExpectedSizeChoosesFewerTablesForLargerSets() {
+        assertTrue(MultiIndexHashIndex.forExpectedSize(1_000).substrings()
+                >= MultiIndexHashIndex.forExpectedSize(10_000_000).substrings());
+    }
+
+    /** Exactly the same id sets as the BK-tree for every radius and several table counts. */
+    @Test
+    void testSameResultsAsBKTreeIndex() {
+        Random rnd = new Random(3);
+        BKTreeIndex reference = new BKTreeIndex();
+        MultiIndexHashIndex[] mih = {new MultiIndexHashIndex(2), new MultiIndexHashIndex(3),
+                new MultiIndexHashIndex(4), new MultiIndexHashIndex(7)};
+        long[] seeds = new long[40];
+        for (int i = 0; i < seeds.length; i++) seeds[i] = rnd.nextLong();
+        for (int i = 0; i < 3000; i++) {
+            long h = seeds[rnd.nextInt(seeds.length)];
+            for (int f = rnd.nextInt(12); f > 0; f--) h ^= 1L << rnd.nextInt(64);
+            reference.add(h, "id" + i);
+            for (MultiIndexHashIndex x : mih) x.add(h, "id" + i);
+        }
+        for (int q = 0; q < 100; q++) {
+            long h = seeds[rnd.nextInt(seeds.length)] ^ (1L << rnd.nextInt(64));
+            for (int r : new int[]{0, 1, 4, 7, 10, 16, 40}) {
+                var expected = new HashSet<>(reference.withinHamming(h, r));
+                for (MultiIndexHashIndex x : mih) {
+                    List<String> actual = x.withinHamming(h, r);
+                    assertEquals(expected.size(), actual.size(), "m=" + x.substrings() + " r=" + r);
+                    assertEquals(expected, new HashSet<>(actual), "m=" + x.substrings() + " r=" + r);
+                }
+            }
+        }
+    }
+}
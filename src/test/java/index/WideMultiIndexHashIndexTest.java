@@ -0,0 +1,72 @@
+package index;
+
+import hash.WideHash;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WideMultiIndexHashIndexTest {
+
+    private static WideHash flip(WideHash h, Random rnd, int flips) {
+        long[] w = h.words().clone();
+        for (int f = 0; f < flips; f++) {
+            int b = rnd.nextInt(w.length * 64);
+            w[b >>> 6] ^= 1L << b;
+        }
+        return new WideHash(w);
+    }
+
+    @Test
+    void testWithinHamming_EmptyIndex() {
+        assertTrue(new WideMultiIndexHashIndex(256).withinHamming(new WideHash(new long[4]), 10).isEmpty());
+    }
+
+    @Test
+    void testMatchesAcrossWordBoundaries() {
+        WideMultiIndexHashIndex index = new WideMultiIndexHashIndex(128);
+        // one flip in each of the 8 substrings: none matches exactly, distance 8
+        long spread = 1L | 1L << 16 | 1L << 32 | 1L << 48;
+        index.add(new WideHash(new long[]{0L, 0L}), "zero");
+        index.add(new WideHash(new long[]{spread, spread}), "eight");
+        assertEquals(List.of("zero"), index.withinHamming(new WideHash(new long[2]), 7));
+        assertEquals(Set.of("zero", "eight"), new HashSet<>(index.withinHamming(new WideHash(new long[2]), 8)));
+    }
+
+    @Test
+    void testRejectsOtherWidths() {
+        assertThrows(IllegalArgumentException.class, () -> new WideMultiIndexHashIndex(100));
+        WideMultiIndexHashIndex index = new WideMultiIndexHashIndex(256);
+        assertThrows(IllegalArgumentException.class, () -> index.add(new WideHash(new long[2]), "x"));
+    }
+
+    /** Exactly the ids within the radius, by brute force, from probing and from the scan fallback. */
+    @Test
+    void testSameResultsAsLinearScan() {
+        Random rnd = new Random(4);
+        WideHash[] seeds = new WideHash[30];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = new WideHash(new long[]{rnd.nextLong(), rnd.nextLong(), rnd.nextLong(), rnd.nextLong()});
+        }
+        WideHash[] all = new WideHash[2000];
+        WideMultiIndexHashIndex index = new WideMultiIndexHashIndex(256);
+        for (int i = 0; i < all.length; i++) {
+            all[i] = flip(seeds[rnd.nextInt(seeds.length)], rnd, rnd.nextInt(30));
+            index.add(all[i], "id" + i);
+        }
+        for (int q = 0; q < 60; q++) {
+            WideHash h = flip(seeds[rnd.nextInt(seeds.length)], rnd, 3);
+            for (int r : new int[]{0, 5, 15, 16, 31, 40, 100}) {
+                Set<String> expected = new HashSet<>();
+                for (int i = 0; i < all.length; i++) if (h.distance(all[i]) <= r) expected.add("id" + i);
+                List<String> actual = index.withinHamming(h, r);
+                assertEquals(expected.size(), actual.size(), "r=" + r);
+                assertEquals(expected, new HashSet<>(actual), "r=" + r);
+            }
+        }
+    }
+}